@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.bremersee.groupman.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * The benchmark of the response formats json, smile and cbor. The payload sizes are printed
+ * during the setup of each trial.
+ *
+ * @author Christian Bremer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupEncodingBenchmark {
+
+  private static final TypeReference<List<Group>> GROUP_LIST = new TypeReference<>() {
+  };
+
+  @Param({"json", "smile", "cbor"})
+  private String format;
+
+  @Param({"100", "1000"})
+  private int groupCount;
+
+  @Param({"10", "1000"})
+  private int memberCount;
+
+  private ObjectMapper objectMapper;
+
+  private List<Group> groups;
+
+  private byte[] payload;
+
+  /**
+   * Creates the object mapper and the groups.
+   *
+   * @throws IOException if the groups cannot be encoded
+   */
+  @Setup
+  public void setUp() throws IOException {
+    switch (format) {
+      case "smile":
+        objectMapper = Jackson2ObjectMapperBuilder.smile().build();
+        break;
+      case "cbor":
+        objectMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        break;
+      default:
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+    groups = new ArrayList<>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      Set<String> members = new LinkedHashSet<>();
+      for (int j = 0; j < memberCount; j++) {
+        members.add("member" + j);
+      }
+      groups.add(GroupMapper.toGroup(GroupEntity.builder()
+          .id("group" + i)
+          .version(1L)
+          .createdBy("admin")
+          .createdAt(new Date())
+          .modifiedAt(new Date())
+          .source(Source.INTERNAL)
+          .name("Group " + i)
+          .description("The group " + i)
+          .members(members)
+          .owners(new LinkedHashSet<>(members))
+          .build()));
+    }
+    payload = objectMapper.writeValueAsBytes(groups);
+    System.out.printf("%nPayload of %d groups with %d members as %s: %d bytes%n",
+        groupCount, memberCount, format, payload.length);
+  }
+
+  /**
+   * Encodes the groups.
+   *
+   * @return the encoded groups
+   * @throws IOException if the groups cannot be encoded
+   */
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return objectMapper.writeValueAsBytes(groups);
+  }
+
+  /**
+   * Decodes the groups.
+   *
+   * @return the decoded groups
+   * @throws IOException if the groups cannot be decoded
+   */
+  @Benchmark
+  public List<Group> decode() throws IOException {
+    return objectMapper.readValue(payload, GROUP_LIST);
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.bremersee.groupman.config.ModelMapperConfiguration;
+import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The benchmark of the group mapper against the model mapper.
+ *
+ * @author Christian Bremer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupMapperBenchmark {
+
+  @Param({"100", "10000"})
+  private int groupCount;
+
+  @Param({"10", "1000"})
+  private int memberCount;
+
+  private ModelMapper modelMapper;
+
+  private List<GroupEntity> entities;
+
+  private List<Group> groups;
+
+  /**
+   * Creates the groups.
+   */
+  @Setup
+  public void setUp() {
+    modelMapper = new ModelMapper();
+    new ModelMapperConfiguration().configure(modelMapper);
+    entities = new ArrayList<>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      Set<String> members = new LinkedHashSet<>();
+      for (int j = 0; j < memberCount; j++) {
+        members.add("member" + j);
+      }
+      entities.add(GroupEntity.builder()
+          .id("group" + i)
+          .version(1L)
+          .createdBy("admin")
+          .createdAt(new Date())
+          .modifiedAt(new Date())
+          .source(Source.INTERNAL)
+          .name("Group " + i)
+          .description("The group " + i)
+          .members(members)
+          .owners(new LinkedHashSet<>(members))
+          .build());
+    }
+    groups = entities.stream().map(GroupMapper::toGroup).collect(Collectors.toList());
+  }
+
+  /**
+   * Maps the group entities with the model mapper.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void modelMapperToGroup(Blackhole blackhole) {
+    for (GroupEntity entity : entities) {
+      Group destination = new Group();
+      destination.setMembers(new ArrayList<>());
+      destination.setOwners(new ArrayList<>());
+      modelMapper.map(entity, destination);
+      blackhole.consume(destination);
+    }
+  }
+
+  /**
+   * Maps the group entities with the group mapper.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void groupMapperToGroup(Blackhole blackhole) {
+    for (GroupEntity entity : entities) {
+      blackhole.consume(GroupMapper.toGroup(entity));
+    }
+  }
+
+  /**
+   * Maps the groups with the model mapper.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void modelMapperToGroupEntity(Blackhole blackhole) {
+    for (Group group : groups) {
+      GroupEntity destination = new GroupEntity();
+      modelMapper.map(group, destination);
+      blackhole.consume(destination);
+    }
+  }
+
+  /**
+   * Maps the groups with the group mapper.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void groupMapperToGroupEntity(Blackhole blackhole) {
+    for (Group group : groups) {
+      blackhole.consume(GroupMapper.toGroupEntity(group));
+    }
+  }
+
+}
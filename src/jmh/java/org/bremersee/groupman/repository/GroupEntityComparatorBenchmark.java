@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of sorting groups with the group entity comparator, that is used by the
+ * controllers.
+ *
+ * @author Christian Bremer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupEntityComparatorBenchmark {
+
+  @Param({"100", "10000", "100000"})
+  private int groupCount;
+
+  private List<GroupEntity> groups;
+
+  /**
+   * Creates the groups in random order.
+   */
+  @Setup
+  public void setUp() {
+    groups = new ArrayList<>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(GroupEntity.builder()
+          .id(String.valueOf(i))
+          .name("group" + (i % (groupCount / 2 + 1)))
+          .createdBy("user" + (i % 7))
+          .build());
+    }
+    Collections.shuffle(groups, new Random(42L));
+  }
+
+  /**
+   * Sorts a copy of the groups.
+   *
+   * @return the sorted groups
+   */
+  @Benchmark
+  public List<GroupEntity> sort() {
+    List<GroupEntity> copy = new ArrayList<>(groups);
+    copy.sort(GroupEntityComparator.INSTANCE);
+    return copy;
+  }
+
+}
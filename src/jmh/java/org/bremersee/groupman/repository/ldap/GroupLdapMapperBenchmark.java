@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bremersee.groupman.config.DomainControllerProperties;
+import org.ldaptive.LdapAttribute;
+import org.ldaptive.LdapEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The benchmark of the group ldap mapper.
+ *
+ * @author Christian Bremer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupLdapMapperBenchmark {
+
+  @Param({"10", "1000"})
+  private int groupCount;
+
+  @Param({"10", "1000"})
+  private int memberCount;
+
+  private GroupLdapMapper mapper;
+
+  private List<LdapEntry> entries;
+
+  /**
+   * Creates the ldap entries.
+   */
+  @Setup
+  public void setUp() {
+    DomainControllerProperties properties = new DomainControllerProperties();
+    properties.setGroupBaseDn("ou=groups,dc=example,dc=org");
+    properties.setUserBaseDn("ou=people,dc=example,dc=org");
+    properties.setUserRdn("uid");
+    mapper = new GroupLdapMapper(properties);
+
+    String[] members = new String[memberCount];
+    for (int i = 0; i < memberCount; i++) {
+      members[i] = "uid=member" + i + ",ou=people,dc=example,dc=org";
+    }
+    entries = new ArrayList<>(groupCount);
+    for (int i = 0; i < groupCount; i++) {
+      entries.add(new LdapEntry(
+          "cn=group" + i + ",ou=groups,dc=example,dc=org",
+          new LdapAttribute(properties.getGroupNameAttribute(), "group" + i),
+          new LdapAttribute(properties.getGroupDescriptionAttribute(), "The group " + i),
+          new LdapAttribute(properties.getGroupMemberAttribute(), members),
+          new LdapAttribute(properties.getGroupCreatedAtAttribute(), "20191226154554.000Z"),
+          new LdapAttribute(properties.getGroupModifiedAtAttribute(), "20200101120000.000Z")));
+    }
+  }
+
+  /**
+   * Maps the ldap entries.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void map(Blackhole blackhole) {
+    for (LdapEntry entry : entries) {
+      blackhole.consume(mapper.map(entry));
+    }
+  }
+
+}
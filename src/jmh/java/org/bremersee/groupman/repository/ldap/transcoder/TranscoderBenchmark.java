@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap.transcoder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.bremersee.groupman.config.DomainControllerProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The benchmark of the value transcoders.
+ *
+ * @author Christian Bremer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranscoderBenchmark {
+
+  @Param({"10", "1000"})
+  private int memberCount;
+
+  private GroupMemberValueTranscoder groupMemberValueTranscoder;
+
+  private GeneralizedTimeToDateValueTranscoder generalizedTimeTranscoder;
+
+  private String[] memberDns;
+
+  private String[] generalizedTimes;
+
+  private Date[] dates;
+
+  /**
+   * Creates the values.
+   */
+  @Setup
+  public void setUp() {
+    DomainControllerProperties properties = new DomainControllerProperties();
+    properties.setUserBaseDn("ou=people,dc=example,dc=org");
+    properties.setUserRdn("uid");
+    groupMemberValueTranscoder = new GroupMemberValueTranscoder(properties);
+    generalizedTimeTranscoder = new GeneralizedTimeToDateValueTranscoder();
+
+    memberDns = new String[memberCount];
+    generalizedTimes = new String[memberCount];
+    dates = new Date[memberCount];
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < memberCount; i++) {
+      memberDns[i] = "uid=member" + i + ",ou=people,dc=example,dc=org";
+      dates[i] = new Date(now - i * 60000L);
+      generalizedTimes[i] = generalizedTimeTranscoder.encodeStringValue(dates[i]);
+    }
+  }
+
+  /**
+   * Decodes the member dns.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void decodeGroupMembers(Blackhole blackhole) {
+    for (String memberDn : memberDns) {
+      blackhole.consume(groupMemberValueTranscoder.decodeStringValue(memberDn));
+    }
+  }
+
+  /**
+   * Decodes the generalized times.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void decodeGeneralizedTimes(Blackhole blackhole) {
+    for (String generalizedTime : generalizedTimes) {
+      blackhole.consume(generalizedTimeTranscoder.decodeStringValue(generalizedTime));
+    }
+  }
+
+  /**
+   * Encodes the generalized times.
+   *
+   * @param blackhole the blackhole
+   */
+  @Benchmark
+  public void encodeGeneralizedTimes(Blackhole blackhole) {
+    for (Date date : dates) {
+      blackhole.consume(generalizedTimeTranscoder.encodeStringValue(date));
+    }
+  }
+
+}
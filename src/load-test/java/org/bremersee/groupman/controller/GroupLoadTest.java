@@ -0,0 +1,469 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The group load test. It boots the application with the embedded mongo and the in-memory ldap
+ * server, seeds the configured volumes and drives a mix of requests over http with a fixed number
+ * of concurrent virtual users. Throughput and latency percentiles of every operation are logged
+ * at the end of the run.
+ *
+ * <p>The load test is not part of the regular build, it is executed with
+ * {@code mvn -P load-test test}. The volumes, the mix and the duration can be set with system
+ * properties, e.g. {@code -Dgroupman.load-test.groups=10000 -Dgroupman.load-test.duration=30s}.
+ *
+ * @author Christian Bremer
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.ldap.embedded.base-dn=dc=bremersee,dc=org",
+    "spring.ldap.embedded.credential.username=uid=admin",
+    "spring.ldap.embedded.credential.password=secret",
+    "spring.ldap.embedded.ldif=classpath:schema.ldif",
+    "spring.ldap.embedded.port=12399",
+    "spring.ldap.embedded.validation.enabled=false",
+    "bremersee.ldaptive.enabled=true",
+    "bremersee.ldaptive.use-unbound-id-provider=true",
+    "bremersee.ldaptive.ldap-url=ldap://localhost:12399",
+    "bremersee.ldaptive.use-ssl=false",
+    "bremersee.ldaptive.use-start-tls=false",
+    "bremersee.ldaptive.bind-dn=uid=admin",
+    "bremersee.ldaptive.bind-credentials=secret",
+    "bremersee.ldaptive.pooled=false",
+    "bremersee.domain-controller.group-base-dn=ou=groups,dc=bremersee,dc=org",
+    "bremersee.domain-controller.group-member-attribute=uniqueMember",
+    "bremersee.domain-controller.member-dn=true",
+    "bremersee.domain-controller.user-base-dn=ou=people,dc=bremersee,dc=org",
+    "bremersee.domain-controller.user-rdn=uid",
+    "bremersee.domain-controller.group-find-all-filter=(objectClass=groupOfUniqueNames)",
+    "bremersee.domain-controller.group-find-one-filter=(&(objectClass=groupOfUniqueNames)(cn={0}))"
+})
+@ActiveProfiles({"in-memory", "ldap", "load-test"})
+@TestInstance(Lifecycle.PER_CLASS) // allows us to use @BeforeAll with a non-static method
+@Slf4j
+class GroupLoadTest {
+
+  private static final int LOAD_USERS = 10; // see application-load-test.yml
+
+  private static final String ADMIN = "admin";
+
+  private static final String USER_BASE_DN = "ou=people,dc=bremersee,dc=org";
+
+  private static final String GROUP_BASE_DN = "ou=groups,dc=bremersee,dc=org";
+
+  private static final int SEED_BATCH_SIZE = 1000;
+
+  /**
+   * The operations of the load test.
+   */
+  enum Operation {
+
+    /**
+     * Gets the membership of a load user.
+     */
+    GET_MEMBERSHIP,
+
+    /**
+     * Gets mongodb and ldap groups by their ids.
+     */
+    GET_GROUPS_BY_IDS,
+
+    /**
+     * Reads a group of a load user, changes the description and writes it back.
+     */
+    UPDATE_GROUP,
+
+    /**
+     * Finds a page of all groups as administrator.
+     */
+    FIND_GROUPS
+  }
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private ReactiveMongoTemplate mongoTemplate;
+
+  @Autowired
+  private InMemoryDirectoryServer directoryServer;
+
+  @Value("${groupman.load-test.seed:42}")
+  private long seed;
+
+  @Value("${groupman.load-test.users:50000}")
+  private int users;
+
+  @Value("${groupman.load-test.groups:100000}")
+  private int groups;
+
+  @Value("${groupman.load-test.memberships:1000000}")
+  private long memberships;
+
+  @Value("${groupman.load-test.ldap-groups:50000}")
+  private int ldapGroups;
+
+  @Value("${groupman.load-test.ldap-members-per-group:10}")
+  private int ldapMembersPerGroup;
+
+  @Value("${groupman.load-test.concurrency:64}")
+  private int concurrency;
+
+  @Value("${groupman.load-test.warm-up:30s}")
+  private Duration warmUp;
+
+  @Value("${groupman.load-test.duration:2m}")
+  private Duration duration;
+
+  @Value("${groupman.load-test.ids-per-request:10}")
+  private int idsPerRequest;
+
+  @Value("${groupman.load-test.page-size:100}")
+  private int pageSize;
+
+  @Value("${groupman.load-test.mix.get-membership:50}")
+  private int getMembershipWeight;
+
+  @Value("${groupman.load-test.mix.get-groups-by-ids:25}")
+  private int getGroupsByIdsWeight;
+
+  @Value("${groupman.load-test.mix.update-group:10}")
+  private int updateGroupWeight;
+
+  @Value("${groupman.load-test.mix.find-groups:15}")
+  private int findGroupsWeight;
+
+  private final List<String> mongoIds = new ArrayList<>();
+
+  private final List<String> ldapNames = new ArrayList<>();
+
+  private WebClient webClient;
+
+  /**
+   * Seeds the groups into mongodb and into the ldap server.
+   *
+   * @throws LDAPException if an ldap group could not be added
+   */
+  @BeforeAll
+  void setUpData() throws LDAPException {
+    webClient = WebClient.create("http://localhost:" + port);
+    final Random random = new Random(seed);
+    final long start = System.currentTimeMillis();
+    Flux.range(0, groups)
+        .map(index -> newGroupEntity(index, random))
+        .buffer(SEED_BATCH_SIZE)
+        .concatMap(batch -> mongoTemplate.insertAll(batch).then())
+        .blockLast();
+    log.info("Seeded {} mongodb groups with {} memberships in {} ms.",
+        groups, memberships, System.currentTimeMillis() - start);
+
+    final long ldapStart = System.currentTimeMillis();
+    for (int index = 0; index < ldapGroups; index++) {
+      final String name = String.format("ldap-group-%06d", index);
+      final Set<String> members = new LinkedHashSet<>();
+      while (members.size() < Math.min(ldapMembersPerGroup, users)) {
+        members.add("uid=" + user(random.nextInt(users)) + "," + USER_BASE_DN);
+      }
+      directoryServer.add(new Entry(
+          "cn=" + name + "," + GROUP_BASE_DN,
+          new Attribute("objectClass", "top", "groupOfUniqueNames"),
+          new Attribute("cn", name),
+          new Attribute("uniqueMember", members)));
+      ldapNames.add(name);
+    }
+    log.info("Seeded {} ldap groups in {} ms.",
+        ldapGroups, System.currentTimeMillis() - ldapStart);
+  }
+
+  private GroupEntity newGroupEntity(int index, Random random) {
+    // The owner of a group is a member, too. The load users ('user0' to 'user9') own every
+    // group, whose index modulo the number of users is their number.
+    final String owner = user(index % users);
+    final long size = memberships / groups + (index < memberships % groups ? 1 : 0);
+    final Set<String> members = new LinkedHashSet<>();
+    members.add(owner);
+    while (members.size() < Math.min(size, users)) {
+      members.add(user(random.nextInt(users)));
+    }
+    final String id = new ObjectId().toHexString();
+    mongoIds.add(id);
+    final Date now = new Date();
+    return GroupEntity.builder()
+        .id(id)
+        .source(Source.INTERNAL)
+        .name(String.format("group-%07d", index))
+        .description("Load test group " + index)
+        .createdAt(now)
+        .modifiedAt(now)
+        .createdBy(owner)
+        .owners(new LinkedHashSet<>(Set.of(owner)))
+        .members(members)
+        .build();
+  }
+
+  private static String user(int index) {
+    return "user" + index;
+  }
+
+  /**
+   * Runs the load test.
+   */
+  @Test
+  void runLoadTest() {
+    log.info("Warming up for {} with {} virtual users.", warmUp, concurrency);
+    drive(warmUp, newStatistics());
+
+    log.info("Running for {} with {} virtual users.", duration, concurrency);
+    final Map<Operation, Statistics> statistics = newStatistics();
+    final long start = System.nanoTime();
+    drive(duration, statistics);
+    final double seconds = (System.nanoTime() - start) / 1e9;
+    report(statistics, seconds);
+
+    statistics.forEach((operation, stats) -> {
+      assertTrue(stats.histogram.getTotalCount() > 0 || weight(operation) <= 0,
+          "No successful operation " + operation);
+      assertEquals(0L, stats.errors.get(), "Failed operations " + operation);
+    });
+  }
+
+  private static Map<Operation, Statistics> newStatistics() {
+    final Map<Operation, Statistics> statistics = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      statistics.put(operation, new Statistics());
+    }
+    return statistics;
+  }
+
+  private void drive(Duration runTime, Map<Operation, Statistics> statistics) {
+    Flux.<Operation>generate(sink -> sink.next(nextOperation()))
+        .take(runTime)
+        .flatMap(operation -> execute(operation, statistics.get(operation)), concurrency)
+        .blockLast();
+  }
+
+  private int weight(Operation operation) {
+    switch (operation) {
+      case GET_MEMBERSHIP:
+        return getMembershipWeight;
+      case GET_GROUPS_BY_IDS:
+        return getGroupsByIdsWeight;
+      case UPDATE_GROUP:
+        return updateGroupWeight;
+      default:
+        return findGroupsWeight;
+    }
+  }
+
+  private Operation nextOperation() {
+    int total = 0;
+    for (Operation operation : Operation.values()) {
+      total += Math.max(0, weight(operation));
+    }
+    int value = ThreadLocalRandom.current().nextInt(Math.max(1, total));
+    for (Operation operation : Operation.values()) {
+      value -= Math.max(0, weight(operation));
+      if (value < 0) {
+        return operation;
+      }
+    }
+    return Operation.GET_MEMBERSHIP;
+  }
+
+  private Mono<Integer> execute(Operation operation, Statistics statistics) {
+    return Mono.defer(() -> {
+      final long start = System.nanoTime();
+      return call(operation)
+          .doOnNext(status -> statistics.record(status, System.nanoTime() - start))
+          .onErrorResume(error -> {
+            log.debug("Operation {} failed.", operation, error);
+            statistics.errors.incrementAndGet();
+            return Mono.empty();
+          });
+    });
+  }
+
+  private Mono<Integer> call(Operation operation) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final String user = user(random.nextInt(LOAD_USERS));
+    switch (operation) {
+      case GET_MEMBERSHIP:
+        return webClient.get()
+            .uri("/api/groups/f/membership")
+            .headers(headers -> headers.setBasicAuth(user, user))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .flatMap(GroupLoadTest::release);
+      case GET_GROUPS_BY_IDS:
+        final StringBuilder uri = new StringBuilder("/api/groups/f?");
+        for (int i = 0; i < idsPerRequest; i++) {
+          final boolean ldap = !ldapNames.isEmpty() && random.nextInt(3) == 0;
+          final String id = ldap
+              ? ldapNames.get(random.nextInt(ldapNames.size()))
+              : mongoIds.get(random.nextInt(mongoIds.size()));
+          uri.append(i == 0 ? "id=" : "&id=").append(id);
+        }
+        return webClient.get()
+            .uri(uri.toString())
+            .headers(headers -> headers.setBasicAuth(user, user))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .flatMap(GroupLoadTest::release);
+      case UPDATE_GROUP:
+        final int index = random.nextInt(LOAD_USERS);
+        final int cycles = Math.max(1, (groups - index + users - 1) / users);
+        final String owner = user(index);
+        final String groupId = mongoIds.get(index + random.nextInt(cycles) * users);
+        return webClient.get()
+            .uri("/api/groups/{id}", groupId)
+            .headers(headers -> headers.setBasicAuth(owner, owner))
+            .accept(MediaType.APPLICATION_JSON)
+            .retrieve()
+            .bodyToMono(Group.class)
+            .flatMap(group -> {
+              group.setDescription("Updated at " + System.currentTimeMillis());
+              return webClient.put()
+                  .uri("/api/groups/{id}", groupId)
+                  .headers(headers -> headers.setBasicAuth(owner, owner))
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .accept(MediaType.APPLICATION_JSON)
+                  .bodyValue(group)
+                  .exchange()
+                  .flatMap(GroupLoadTest::release);
+            });
+      default:
+        final String name = String.format("group-%07d", random.nextInt(Math.max(1, groups)));
+        final GroupEntity after = GroupEntity.builder().name(name).createdBy("").build();
+        return webClient.get()
+            .uri("/api/admin/groups/f/page?limit={limit}&token={token}",
+                pageSize, AbstractGroupController.encodeContinuationToken(after))
+            .headers(headers -> headers.setBasicAuth(ADMIN, ADMIN))
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .flatMap(GroupLoadTest::release);
+    }
+  }
+
+  private static Mono<Integer> release(ClientResponse response) {
+    return response.releaseBody().thenReturn(response.rawStatusCode());
+  }
+
+  private void report(Map<Operation, Statistics> statistics, double seconds) {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%nLoad test: %d groups, %d memberships, %d ldap groups, "
+            + "%d virtual users, %.1f s%n", groups, memberships, ldapGroups, concurrency,
+        seconds));
+    sb.append(String.format("%-18s %10s %8s %9s %10s %9s %9s %9s %9s%n",
+        "operation", "count", "errors", "conflicts", "ops/s", "p50 ms", "p99 ms", "p999 ms",
+        "max ms"));
+    final Histogram total = new Histogram(3);
+    statistics.forEach((operation, stats) -> {
+      total.add(stats.histogram);
+      sb.append(line(operation.name(), stats.histogram, stats.errors.get(),
+          stats.conflicts.get(), seconds));
+    });
+    sb.append(line("TOTAL", total,
+        statistics.values().stream().mapToLong(stats -> stats.errors.get()).sum(),
+        statistics.values().stream().mapToLong(stats -> stats.conflicts.get()).sum(),
+        seconds));
+    log.info(sb.toString());
+  }
+
+  private static String line(
+      String name,
+      Histogram histogram,
+      long errors,
+      long conflicts,
+      double seconds) {
+    return String.format("%-18s %10d %8d %9d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+        name,
+        histogram.getTotalCount(),
+        errors,
+        conflicts,
+        histogram.getTotalCount() / seconds,
+        histogram.getValueAtPercentile(50.0) / 1e6,
+        histogram.getValueAtPercentile(99.0) / 1e6,
+        histogram.getValueAtPercentile(99.9) / 1e6,
+        histogram.getMaxValue() / 1e6);
+  }
+
+  /**
+   * The statistics of an operation. The latencies of the successful calls are recorded in
+   * nanoseconds.
+   */
+  private static class Statistics {
+
+    private final Histogram histogram = new ConcurrentHistogram(3);
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    private void record(int status, long nanos) {
+      if (status == HttpStatus.CONFLICT.value()) {
+        // concurrent updates of the same group by the same load user
+        conflicts.incrementAndGet();
+      } else if (status >= 400) {
+        errors.incrementAndGet();
+      } else {
+        histogram.recordValue(nanos);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.bremersee.groupman.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.Arrays;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+
+/**
+ * The configuration of the http message codecs. The json codecs also support newline delimited
+ * json ({@code application/x-ndjson}); a {@code Flux} is written with this media type element by
+ * element and each element is flushed, so that a client can process the first groups before the
+ * last ones are loaded.
+ *
+ * <p>For the calls of other services there are the binary formats smile and cbor. They are
+ * smaller than json and faster to encode and decode, because e.g. the repeated field names are
+ * written only once. The binary codecs use the same settings as the json codecs.
+ *
+ * @author Christian Bremer
+ */
+@Configuration
+public class CodecConfiguration {
+
+  /**
+   * The media type value of newline delimited json.
+   */
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  /**
+   * The media type of newline delimited json.
+   */
+  public static final MediaType APPLICATION_NDJSON = MediaType
+      .parseMediaType(APPLICATION_NDJSON_VALUE);
+
+  /**
+   * The media type value of smile.
+   */
+  public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+  /**
+   * The media type of smile.
+   */
+  public static final MediaType APPLICATION_SMILE = MediaType
+      .parseMediaType(APPLICATION_SMILE_VALUE);
+
+  private static final MimeType[] JSON_MIME_TYPES = {
+      MediaType.APPLICATION_JSON,
+      new MediaType("application", "*+json"),
+      APPLICATION_NDJSON
+  };
+
+  /**
+   * Replaces the json codecs of spring boot (it runs after the customizer of spring boot) with
+   * codecs, that support newline delimited json, too.
+   *
+   * @param objectMapper the object mapper
+   * @return the codec customizer
+   */
+  @Bean
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public CodecCustomizer jsonCodecCustomizer(ObjectMapper objectMapper) {
+    return configurer -> {
+      final Jackson2JsonEncoder encoder = new Jackson2JsonEncoder(objectMapper, JSON_MIME_TYPES);
+      encoder.setStreamingMediaTypes(Arrays.asList(
+          MediaType.APPLICATION_STREAM_JSON,
+          APPLICATION_NDJSON));
+      configurer.defaultCodecs().jackson2JsonEncoder(encoder);
+      configurer.defaultCodecs().jackson2JsonDecoder(
+          new Jackson2JsonDecoder(objectMapper, JSON_MIME_TYPES));
+    };
+  }
+
+  /**
+   * Replaces the smile codecs, that spring creates with default settings, and adds the cbor
+   * codecs. The cbor encoder of spring can only write single values, so the lists of groups are
+   * offered as smile only.
+   *
+   * @param objectMapperBuilder the object mapper builder of spring boot
+   * @return the codec customizer
+   */
+  @Bean
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public CodecCustomizer binaryCodecCustomizer(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+    final ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+    final ObjectMapper cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+    return configurer -> {
+      configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper));
+      configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper));
+      configurer.customCodecs().register(new Jackson2CborEncoder(cborMapper));
+      configurer.customCodecs().register(new Jackson2CborDecoder(cborMapper));
+    };
+  }
+
+}
@@ -52,6 +52,10 @@ public class DomainControllerProperties {
 
   private String groupMemberAttribute = "member";
 
+  private String groupCreatedAtAttribute = "whenCreated";
+
+  private String groupModifiedAtAttribute = "whenChanged";
+
   private boolean memberDn = true;
 
   private String userBaseDn;
@@ -62,14 +66,52 @@ public class DomainControllerProperties {
 
   private SearchScope groupFindAllSearchScope = SearchScope.ONELEVEL;
 
+  // Page size of the searches for all groups, paging is disabled, if it is less than 1
+  private int groupFindAllPageSize = 0;
+
+  // Matching rule of the server side sort of the paged searches; it must sort case sensitive like
+  // the group comparator, the default is caseExactOrderingMatch
+  private String groupSortOrderingRule = "2.5.13.6";
+
   private String groupFindOneFilter = "(&(objectClass=group)(cn={0}))";
 
+  // Maximum number of names in one search of the groups by names
+  private int groupFindByNamesChunkSize = 100;
+
+  // Maximum number of concurrent searches of the groups by names
+  private int groupFindByNamesConcurrency = 4;
+
   private SearchScope groupSearchScope = SearchScope.ONELEVEL;
 
   private String adminName = "Administrator";
 
   private List<String> ignoredLdapGroups = new ArrayList<>();
 
+  /**
+   * Gets the attributes, that are returned by the searches for groups. These are the attributes,
+   * that are needed to map a group.
+   *
+   * @return the group return attributes
+   */
+  public String[] getGroupReturnAttributes() {
+    return new String[]{
+        groupNameAttribute,
+        groupDescriptionAttribute,
+        groupMemberAttribute,
+        groupCreatedAtAttribute,
+        groupModifiedAtAttribute
+    };
+  }
+
+  /**
+   * Gets the attributes, that are returned by the searches for group names only.
+   *
+   * @return the group name return attributes
+   */
+  public String[] getGroupNameReturnAttributes() {
+    return new String[]{groupNameAttribute};
+  }
+
   /**
    * Gets the group find by names filter.
    *
@@ -101,4 +143,36 @@ public class DomainControllerProperties {
   public String getGroupFindByMemberContainsFilter() {
     return "(&" + groupFindAllFilter + "(" + groupMemberAttribute + "={0}))";
   }
+
+  /**
+   * Gets the filter, that finds the groups, whose name is greater than or equal to the given name
+   * (parameter {@code {0}}) by the ordering rule of the name attribute.
+   *
+   * @return the group find all from filter
+   */
+  public String getGroupFindAllFromFilter() {
+    return "(&" + groupFindAllFilter + "(" + groupNameAttribute + ">={0}))";
+  }
+
+  /**
+   * Gets the filter, that finds the groups with the given member (parameter {@code {0}}), whose
+   * name is greater than or equal to the given name (parameter {@code {1}}) by the ordering rule
+   * of the name attribute.
+   *
+   * @return the group find by member contains from filter
+   */
+  public String getGroupFindByMemberContainsFromFilter() {
+    return "(&" + groupFindAllFilter + "(" + groupMemberAttribute + "={0})("
+        + groupNameAttribute + ">={1}))";
+  }
+
+  /**
+   * Gets the filter, that finds the groups, which were modified at or after the given time
+   * (parameter {@code {0}} in generalized time format).
+   *
+   * @return the group find modified since filter
+   */
+  public String getGroupFindModifiedSinceFilter() {
+    return "(&" + groupFindAllFilter + "(" + groupModifiedAtAttribute + ">={0}))";
+  }
 }
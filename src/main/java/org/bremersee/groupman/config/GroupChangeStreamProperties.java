@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import java.time.Duration;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The settings of the change stream of the groups collection.
+ *
+ * @author Christian Bremer
+ */
+@ConfigurationProperties(prefix = "bremersee.groupman.change-stream")
+@Component
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+public class GroupChangeStreamProperties {
+
+  /**
+   * Specifies whether the changes of the groups collection are watched or not. Change streams
+   * require a replica set or a sharded cluster.
+   */
+  private boolean enabled = false;
+
+  /**
+   * The collection, in which the resume token is stored.
+   */
+  private String resumeTokenCollection = "resumeTokens";
+
+  /**
+   * The id of the stored resume token; the id of the instance is appended to it.
+   */
+  private String resumeTokenId = "groups";
+
+  /**
+   * The id of this instance, so that every instance stores and resumes its own change stream.
+   * If it is empty, the host name is used.
+   */
+  private String instanceId = "";
+
+  /**
+   * The time to live of a stored resume token, that is not stored again, for example the one of
+   * a removed instance.
+   */
+  private Duration resumeTokenTimeToLive = Duration.ofDays(7L);
+
+  /**
+   * The interval, in which the last resume token is stored.
+   */
+  private Duration resumeTokenSaveInterval = Duration.ofSeconds(10L);
+
+  /**
+   * The first delay before the change stream is opened again after an error; it is doubled on
+   * every further error up to one minute.
+   */
+  private Duration retryInterval = Duration.ofSeconds(1L);
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.repository.ldap.CachingGroupLdapRepository;
+import org.bremersee.groupman.repository.ldap.GroupLdapRepository;
+import org.bremersee.groupman.repository.ldap.GroupLdapRepositoryImpl;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * The ldap group cache configuration. The cache is not used, if the ldap group index is enabled.
+ *
+ * @author Christian Bremer
+ */
+@Profile("ldap")
+@ConditionalOnExpression("${bremersee.groupman.ldap-cache.enabled:false}"
+    + " and !${bremersee.groupman.ldap-index.enabled:false}")
+@Configuration
+@Slf4j
+public class LdapCacheConfiguration {
+
+  /**
+   * Creates the caching group ldap repository.
+   *
+   * @param groupLdapRepository the group ldap repository
+   * @param properties the properties
+   * @param meterRegistry the meter registry
+   * @return the caching group ldap repository
+   */
+  @Primary
+  @Bean
+  public GroupLdapRepository cachingGroupLdapRepository(
+      GroupLdapRepositoryImpl groupLdapRepository,
+      LdapCacheProperties properties,
+      MeterRegistry meterRegistry) {
+
+    log.info("Creating caching group ldap repository with {}", properties);
+    return new CachingGroupLdapRepository(groupLdapRepository, properties, meterRegistry);
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import java.time.Duration;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The settings of the ldap group cache.
+ *
+ * @author Christian Bremer
+ */
+@ConfigurationProperties(prefix = "bremersee.groupman.ldap-cache")
+@Component
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+public class LdapCacheProperties {
+
+  /**
+   * Specifies whether the ldap groups are cached or not.
+   */
+  private boolean enabled = false;
+
+  /**
+   * The time after which an entry is removed from the cache.
+   */
+  private Duration timeToLive = Duration.ofMinutes(10L);
+
+  /**
+   * The time after which an entry is reloaded in the background on the next access; the old
+   * value is returned until the new one is loaded. It should be less than the time to live.
+   */
+  private Duration refreshAfter = Duration.ofMinutes(1L);
+
+  /**
+   * The maximum number of entries of each cache (groups by name and groups by member).
+   */
+  private long maximumSize = 10000L;
+
+}
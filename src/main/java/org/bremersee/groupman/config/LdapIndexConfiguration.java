@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bremersee.groupman.repository.cache.GroupCache;
+import org.bremersee.groupman.repository.ldap.GroupLdapRepository;
+import org.bremersee.groupman.repository.ldap.GroupLdapRepositoryImpl;
+import org.bremersee.groupman.repository.ldap.IndexedGroupLdapRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * The ldap group index configuration.
+ *
+ * @author Christian Bremer
+ */
+@Profile("ldap")
+@ConditionalOnProperty(
+    prefix = "bremersee.groupman.ldap-index",
+    name = "enabled",
+    havingValue = "true")
+@Configuration
+public class LdapIndexConfiguration {
+
+  /**
+   * Creates the indexed group ldap repository.
+   *
+   * @param groupLdapRepository the group ldap repository
+   * @param properties the properties
+   * @param groupCache the group cache
+   * @param eventPublisher the event publisher
+   * @param meterRegistry the meter registry
+   * @return the indexed group ldap repository
+   */
+  @Primary
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  public GroupLdapRepository indexedGroupLdapRepository(
+      GroupLdapRepositoryImpl groupLdapRepository,
+      LdapIndexProperties properties,
+      GroupCache groupCache,
+      ApplicationEventPublisher eventPublisher,
+      MeterRegistry meterRegistry) {
+
+    return new IndexedGroupLdapRepository(
+        groupLdapRepository, properties, groupCache, eventPublisher, meterRegistry);
+  }
+
+}
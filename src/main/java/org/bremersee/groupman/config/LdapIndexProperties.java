@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import java.time.Duration;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The settings of the in-memory index of the ldap groups.
+ *
+ * @author Christian Bremer
+ */
+@ConfigurationProperties(prefix = "bremersee.groupman.ldap-index")
+@Component
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+public class LdapIndexProperties {
+
+  /**
+   * Specifies whether the ldap groups are held in memory or not. If enabled, the ldap cache is
+   * not used.
+   */
+  private boolean enabled = false;
+
+  /**
+   * The interval in which all ldap groups are loaded and the index is rebuilt.
+   */
+  private Duration syncInterval = Duration.ofMinutes(5L);
+
+  /**
+   * The interval in which only the groups, that were modified since the last synchronization,
+   * are loaded to update the index. A zero or negative value disables the delta synchronization.
+   */
+  private Duration deltaSyncInterval = Duration.ofSeconds(10L);
+
+  /**
+   * The interval in which the names of all groups are loaded to remove the deleted groups from
+   * the index. The directory has no cheap way to find deleted groups, so this is a search for all
+   * groups (with the name only) and it should run less often than the delta synchronization. A
+   * zero or negative value disables it; then deleted groups are removed by the full
+   * synchronization.
+   */
+  private Duration deletionSyncInterval = Duration.ofMinutes(1L);
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The configuration of the scheduler, that executes the blocking ldap calls, so that they never
+ * run on the event loop.
+ *
+ * @author Christian Bremer
+ */
+@Profile("ldap")
+@Configuration
+@Slf4j
+public class LdapSchedulerConfiguration {
+
+  /**
+   * The bean name of the ldap scheduler.
+   */
+  public static final String LDAP_SCHEDULER = "ldapScheduler";
+
+  /**
+   * Creates the ldap scheduler. It is backed by a bounded thread pool with a bounded queue; the
+   * pool is monitored with the executor metrics of micrometer (active threads, queued tasks,
+   * execution and idle time).
+   *
+   * @param properties the properties
+   * @param meterRegistry the meter registry
+   * @return the ldap scheduler
+   */
+  @Bean(name = LDAP_SCHEDULER, destroyMethod = "dispose")
+  public Scheduler ldapScheduler(
+      LdapSchedulerProperties properties,
+      MeterRegistry meterRegistry) {
+
+    log.info("Creating ldap scheduler with {}", properties);
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        properties.getThreadCap(),
+        properties.getThreadCap(),
+        properties.getKeepAlive().toMillis(),
+        TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(properties.getQueuedTaskCap()),
+        new CustomizableThreadFactory(properties.getName() + "-"),
+        new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    final ExecutorService monitoredExecutor = ExecutorServiceMetrics.monitor(
+        meterRegistry,
+        executor,
+        properties.getName(),
+        Tags.empty());
+    return Schedulers.fromExecutorService(monitoredExecutor, properties.getName());
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import java.time.Duration;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The settings of the scheduler, that executes the blocking ldap calls.
+ *
+ * @author Christian Bremer
+ */
+@ConfigurationProperties(prefix = "bremersee.groupman.ldap-scheduler")
+@Component
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+public class LdapSchedulerProperties {
+
+  /**
+   * The name of the scheduler; it is used as thread name prefix and as metrics tag.
+   */
+  private String name = "ldap";
+
+  /**
+   * The maximum number of threads. It should not be greater than the maximum size of the ldap
+   * connection pool.
+   */
+  private int threadCap = 10;
+
+  /**
+   * The maximum number of waiting ldap calls. If the queue is full, new calls will be rejected.
+   */
+  private int queuedTaskCap = 1000;
+
+  /**
+   * The time an idle thread is kept alive.
+   */
+  private Duration keepAlive = Duration.ofSeconds(60L);
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.repository.cache.GroupCache;
+import org.bremersee.groupman.repository.cache.RedisGroupCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+/**
+ * The configuration of the group cache in redis.
+ *
+ * @author Christian Bremer
+ */
+@ConditionalOnProperty(
+    prefix = "bremersee.groupman.redis-cache",
+    name = "enabled",
+    havingValue = "true")
+@Configuration
+@Slf4j
+public class RedisGroupCacheConfiguration {
+
+  /**
+   * Creates the redis group cache.
+   *
+   * @param redisTemplate the redis template
+   * @param connectionFactory the redis connection factory
+   * @param objectMapper the object mapper
+   * @param properties the properties
+   * @param meterRegistry the meter registry
+   * @return the redis group cache
+   */
+  @Bean(initMethod = "start", destroyMethod = "stop")
+  public GroupCache redisGroupCache(
+      ReactiveStringRedisTemplate redisTemplate,
+      ReactiveRedisConnectionFactory connectionFactory,
+      ObjectMapper objectMapper,
+      RedisGroupCacheProperties properties,
+      MeterRegistry meterRegistry) {
+
+    log.info("Creating redis group cache with {}", properties);
+    return new RedisGroupCache(
+        redisTemplate, connectionFactory, objectMapper, properties, meterRegistry);
+  }
+
+}
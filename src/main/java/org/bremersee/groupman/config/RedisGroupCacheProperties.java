@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.config;
+
+import java.time.Duration;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * The settings of the group cache in redis.
+ *
+ * @author Christian Bremer
+ */
+@ConfigurationProperties(prefix = "bremersee.groupman.redis-cache")
+@Component
+@Getter
+@Setter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor
+public class RedisGroupCacheProperties {
+
+  /**
+   * Specifies whether the groups and the membership ids are cached in redis or not.
+   */
+  private boolean enabled = false;
+
+  /**
+   * The time after which an entry is removed from redis.
+   */
+  private Duration timeToLive = Duration.ofMinutes(10L);
+
+  /**
+   * The prefix of the keys in redis. The scripts of the cache access keys, that they find in
+   * redis, so all keys must be stored on one node: a redis cluster requires a hash tag in the
+   * prefix (like the default {@code {groupman}:}), that puts all keys into the same hash slot.
+   */
+  private String keyPrefix = "{groupman}:";
+
+  /**
+   * The channel, on which the invalidated keys are published to all instances.
+   */
+  private String channel = "groupman:invalidations";
+
+  /**
+   * The time after which an entry is removed from the local cache in front of redis; the local
+   * cache is disabled, if it is zero or negative.
+   */
+  private Duration localTimeToLive = Duration.ofSeconds(10L);
+
+  /**
+   * The maximum number of entries of the local cache.
+   */
+  private long localMaximumSize = 10000L;
+
+}
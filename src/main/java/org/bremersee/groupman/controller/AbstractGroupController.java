@@ -16,53 +16,81 @@
 
 package org.bremersee.groupman.controller;
 
-import java.util.ArrayList;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.Getter;
-import org.bremersee.comparator.ComparatorBuilder;
-import org.bremersee.comparator.spring.ComparatorSpringUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.bremersee.exception.ServiceException;
 import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupChange;
 import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupEntityComparator;
 import org.bremersee.groupman.repository.GroupRepository;
+import org.bremersee.groupman.repository.cache.GroupCache;
 import org.bremersee.groupman.repository.ldap.GroupLdapRepository;
 import org.bremersee.security.core.ReactiveUserContextCaller;
-import org.modelmapper.ModelMapper;
+import org.bson.types.ObjectId;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 /**
  * The abstract group controller.
  *
  * @author Christian Bremer
  */
-abstract class AbstractGroupController {
+@Slf4j
+abstract class AbstractGroupController implements ApplicationEventPublisherAware {
 
   /**
    * The default sort order.
    */
-  static final Sort SORT = Sort.by("name", "createdBy");
+  static final Sort SORT = GroupEntityComparator.SORT;
 
   /**
    * The default comparator.
    */
-  static final Comparator<Object> COMPARATOR = ComparatorBuilder.builder()
-      .addAll(ComparatorSpringUtils.fromSort(SORT))
-      .build();
+  static final Comparator<GroupEntity> COMPARATOR = GroupEntityComparator.INSTANCE;
 
-  @Getter(AccessLevel.PACKAGE)
-  private final ReactiveUserContextCaller caller = new ReactiveUserContextCaller();
+  /**
+   * The maximum number of groups of a page.
+   */
+  static final int MAX_PAGE_SIZE = 1000;
+
+  private static final long UNKNOWN_GROUP_IDS_MAXIMUM_SIZE = 10000L;
+
+  private static final char TOKEN_SEPARATOR = '\u0000';
+
+  private static final char TOKEN_VALUE_PREFIX = '=';
 
   @Getter(AccessLevel.PACKAGE)
-  private final ModelMapper modelMapper;
+  private final ReactiveUserContextCaller caller = new ReactiveUserContextCaller();
 
   @Getter(AccessLevel.PACKAGE)
   private final GroupRepository groupRepository;
@@ -70,44 +98,191 @@ abstract class AbstractGroupController {
   @Getter(AccessLevel.PACKAGE)
   private final GroupLdapRepository groupLdapRepository;
 
+  @Getter(AccessLevel.PACKAGE)
+  private final GroupCache groupCache;
+
   @Getter(AccessLevel.PACKAGE)
   private final String localUserRole;
 
+  private final Duration mongoTimeout;
+
+  private final Duration ldapTimeout;
+
+  private final Cache<String, Boolean> unknownGroupIds;
+
+  private ApplicationEventPublisher eventPublisher;
+
   /**
    * Instantiates a new abstract group controller.
    *
    * @param groupRepository the group repository
    * @param groupLdapRepository the group ldap repository
-   * @param modelMapper the model mapper
+   * @param groupCache the group cache
    * @param localUserRole the local user role
+   * @param mongoTimeout the maximum time to wait for mongodb in a merged query
+   * @param ldapTimeout the maximum time to wait for ldap in a merged query
+   * @param unknownIdTimeToLive how long an id, that was not found, is remembered as unknown; a
+   *     zero or negative value disables the remembering
    */
   public AbstractGroupController(
       final GroupRepository groupRepository,
       final GroupLdapRepository groupLdapRepository,
-      final ModelMapper modelMapper,
-      final String localUserRole) {
+      final GroupCache groupCache,
+      final String localUserRole,
+      final Duration mongoTimeout,
+      final Duration ldapTimeout,
+      final Duration unknownIdTimeToLive) {
 
     Assert.notNull(groupRepository, "Group repository must not be null.");
     Assert.notNull(groupLdapRepository, "Group ldap repository must not be null.");
+    Assert.notNull(groupCache, "Group cache must not be null.");
     this.groupRepository = groupRepository;
     this.groupLdapRepository = groupLdapRepository;
+    this.groupCache = groupCache;
     this.localUserRole = localUserRole;
-    this.modelMapper = modelMapper;
+    this.mongoTimeout = mongoTimeout;
+    this.ldapTimeout = ldapTimeout;
+    if (unknownIdTimeToLive == null
+        || unknownIdTimeToLive.isZero()
+        || unknownIdTimeToLive.isNegative()) {
+      this.unknownGroupIds = null;
+    } else {
+      this.unknownGroupIds = Caffeine.newBuilder()
+          .expireAfterWrite(unknownIdTimeToLive.toNanos(), TimeUnit.NANOSECONDS)
+          .maximumSize(UNKNOWN_GROUP_IDS_MAXIMUM_SIZE)
+          .build();
+    }
   }
 
   /**
-   * Gets group entity by id.
+   * Gets group entity by id. The id decides, which backend is asked: ids in the format of an
+   * object id are generated by mongodb, so only mongodb is asked; all other ids are most likely
+   * names of ldap groups, so ldap is asked first. The groups of mongodb are read through the group
+   * cache. Ids, that are found nowhere, are remembered for a while and are answered with 'not
+   * found' without asking any backend.
    *
    * @param groupId the group id
    * @return the group entity
    */
   Mono<GroupEntity> getGroupEntityById(final String groupId) {
-    return groupRepository
-        .findById(groupId)
-        .switchIfEmpty(groupLdapRepository.findByName(groupId))
+    final Mono<GroupEntity> groupEntity;
+    if (ObjectId.isValid(groupId)) {
+      groupEntity = groupCache.getGroup(groupId, groupRepository.findById(groupId));
+    } else if (unknownGroupIds != null && unknownGroupIds.getIfPresent(groupId) != null) {
+      groupEntity = Mono.empty();
+    } else {
+      groupEntity = groupLdapRepository.findByName(groupId)
+          .switchIfEmpty(groupCache.getGroup(groupId, groupRepository.findById(groupId)))
+          .switchIfEmpty(Mono.fromRunnable(() -> {
+            if (unknownGroupIds != null) {
+              unknownGroupIds.put(groupId, Boolean.TRUE);
+            }
+          }));
+    }
+    return groupEntity
         .switchIfEmpty(Mono.error(() -> ServiceException.notFound("Group", groupId)));
   }
 
+  @Override
+  public void setApplicationEventPublisher(
+      final ApplicationEventPublisher applicationEventPublisher) {
+    this.eventPublisher = applicationEventPublisher;
+  }
+
+  /**
+   * Forgets an unknown id, when a group with this id was written to mongodb by someone else.
+   *
+   * @param groupChange the group change
+   */
+  @EventListener
+  public void onGroupChange(final GroupChange groupChange) {
+    if (unknownGroupIds != null) {
+      if (groupChange.getGroupId() == null) {
+        unknownGroupIds.invalidateAll();
+      } else {
+        unknownGroupIds.invalidate(groupChange.getGroupId());
+      }
+    }
+  }
+
+  /**
+   * Removes the written group and the membership ids of the given users from the group cache and
+   * publishes the change.
+   *
+   * @param groupEntity the written group
+   * @param users the users, whose membership may have been changed by the write (e.g. the
+   *     members before and after the write)
+   * @return the written group, when the cache entries are removed
+   */
+  @SafeVarargs
+  final Mono<GroupEntity> changed(
+      final GroupEntity groupEntity,
+      final Collection<String>... users) {
+    final Set<String> names = new HashSet<>();
+    for (Collection<String> collection : users) {
+      if (collection != null) {
+        names.addAll(collection);
+      }
+    }
+    return changed(new GroupChange(groupEntity.getId(), false, names))
+        .thenReturn(groupEntity);
+  }
+
+  /**
+   * Removes the deleted group and the membership ids of its members from the group cache and
+   * publishes the change.
+   *
+   * @param groupEntity the deleted group
+   * @return completes, when the cache entries are removed
+   */
+  Mono<Void> deleted(final GroupEntity groupEntity) {
+    return changed(new GroupChange(
+        groupEntity.getId(),
+        true,
+        groupEntity.getMembers() != null
+            ? new HashSet<>(groupEntity.getMembers())
+            : Collections.emptySet()));
+  }
+
+  /**
+   * Removes the changed group and the membership ids of the affected users from the group cache
+   * and publishes the change.
+   *
+   * @param groupChange the group change
+   * @return completes, when the cache entries are removed
+   */
+  Mono<Void> changed(final GroupChange groupChange) {
+    return groupCache
+        .invalidate(Collections.singleton(groupChange.getGroupId()), groupChange.getUsers())
+        .doOnSuccess(nothing -> {
+          if (eventPublisher != null) {
+            eventPublisher.publishEvent(groupChange);
+          }
+        });
+  }
+
+  /**
+   * Looks up, why an atomic update of the members or owners of a group did not modify the
+   * group, and returns the matching error: the group does not exist, it is not owned by the given
+   * user or it is not stored in mongodb, or the last owner would have been removed.
+   *
+   * @param groupId the group id
+   * @param owner the owner, that was required by the update (may be {@code null})
+   * @return the error
+   */
+  Mono<GroupEntity> unmodifiedGroup(final String groupId, final String owner) {
+    return getGroupEntityById(groupId)
+        .flatMap(groupEntity -> {
+          if (Source.LDAP.equals(groupEntity.getSource())
+              || (owner != null && !groupEntity.getOwners().contains(owner))) {
+            return Mono.error(ServiceException.forbidden("Group", groupId));
+          }
+          return Mono.error(ServiceException.badRequest(
+              "The last owner of a group cannot be removed.",
+              "GRP:LAST_OWNER"));
+        });
+  }
+
   /**
    * Gets group entities by ids.
    *
@@ -115,10 +290,206 @@ abstract class AbstractGroupController {
    * @return the group entities by ids
    */
   Flux<GroupEntity> getGroupEntitiesByIds(final List<String> ids) {
-    return groupRepository
-        .findByIdIn(ids == null ? Collections.emptyList() : ids)
-        .concatWith(groupLdapRepository.findByNameIn(ids))
-        .sort(COMPARATOR);
+    return merge(
+        groupRepository.findByIdIn(ids == null ? Collections.emptyList() : ids, SORT),
+        groupLdapRepository.findByNameIn(ids));
+  }
+
+  /**
+   * Subscribes to the groups of mongodb and to the groups of ldap at the same time and merges
+   * them. Both sources must be sorted by {@link #COMPARATOR}; the merge emits a group as soon as
+   * the heads of both sources are known, so nothing is buffered. If a source does not complete
+   * within its timeout, the groups it has emitted so far are used and the rest is dropped, so
+   * that a slow backend produces a partial answer instead of a stalled request.
+   *
+   * @param mongoGroups the sorted groups of mongodb
+   * @param ldapGroups the sorted groups of ldap
+   * @return the merged and sorted groups
+   */
+  Flux<GroupEntity> merge(
+      final Flux<GroupEntity> mongoGroups,
+      final Flux<GroupEntity> ldapGroups) {
+    return Flux.mergeOrdered(
+        COMPARATOR,
+        limit(mongoGroups, mongoTimeout, "mongodb"),
+        limit(ldapGroups, ldapTimeout, "ldap"));
+  }
+
+  /**
+   * Decodes the continuation token of a page. The token contains the sort key (name, creator,
+   * source and id) of the last group of the previous page.
+   *
+   * @param token the continuation token (may be {@code null})
+   * @return the last group of the previous page with the sort key only or {@code null}, if the
+   *     first page is requested
+   */
+  static GroupEntity decodeContinuationToken(final String token) {
+    if (!StringUtils.hasText(token)) {
+      return null;
+    }
+    try {
+      final String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      final String[] parts = key.split(String.valueOf(TOKEN_SEPARATOR), -1);
+      if (parts.length != 4) {
+        throw new IllegalArgumentException("The continuation token has not four parts.");
+      }
+      final String source = decodeTokenPart(parts[2]);
+      return GroupEntity.builder()
+          .name(decodeTokenPart(parts[0]))
+          .createdBy(decodeTokenPart(parts[1]))
+          .source(source != null ? Source.valueOf(source) : null)
+          .id(decodeTokenPart(parts[3]))
+          .build();
+    } catch (IllegalArgumentException e) {
+      throw ServiceException.badRequest("The continuation token is invalid.", "GRP:TOKEN");
+    }
+  }
+
+  /**
+   * Encodes the continuation token of the page, that follows the given group.
+   *
+   * @param last the last group of a page
+   * @return the continuation token
+   */
+  static String encodeContinuationToken(final GroupEntity last) {
+    final String key = encodeTokenPart(last.getName())
+        + TOKEN_SEPARATOR
+        + encodeTokenPart(last.getCreatedBy())
+        + TOKEN_SEPARATOR
+        + encodeTokenPart(last.getSource() != null ? last.getSource().name() : null)
+        + TOKEN_SEPARATOR
+        + encodeTokenPart(last.getId());
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(key.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // a value is prefixed, so that an empty value is not the same as null
+  private static String encodeTokenPart(final String value) {
+    return value != null ? TOKEN_VALUE_PREFIX + value : "";
+  }
+
+  private static String decodeTokenPart(final String part) {
+    if (part.isEmpty()) {
+      return null;
+    }
+    if (part.charAt(0) != TOKEN_VALUE_PREFIX) {
+      throw new IllegalArgumentException("The part of the continuation token is invalid.");
+    }
+    return part.substring(1);
+  }
+
+  /**
+   * Gets the size of a page.
+   *
+   * @param limit the requested size (may be {@code null})
+   * @return the size of the page, at least one and at most {@link #MAX_PAGE_SIZE}
+   */
+  static int pageSize(final Integer limit) {
+    if (limit == null || limit <= 0) {
+      return 100;
+    }
+    return Math.min(limit, MAX_PAGE_SIZE);
+  }
+
+  /**
+   * Subscribes to the groups of mongodb and to the groups of ldap at the same time and merges
+   * them like {@link #merge(Flux, Flux)}, but for a page: if a source does not complete within
+   * its timeout, the page fails, because a continuation token after a partial answer would skip
+   * the groups, that were not emitted.
+   *
+   * @param mongoGroups the sorted groups of mongodb
+   * @param ldapGroups the sorted groups of ldap
+   * @return the merged and sorted groups
+   */
+  Flux<GroupEntity> mergePage(
+      final Flux<GroupEntity> mongoGroups,
+      final Flux<GroupEntity> ldapGroups) {
+    return Flux.mergeOrdered(
+        COMPARATOR,
+        limitOrFail(mongoGroups, mongoTimeout, "mongodb"),
+        limitOrFail(ldapGroups, ldapTimeout, "ldap"));
+  }
+
+  /**
+   * Takes a page of the sorted groups. One more group is requested to know, whether there is a
+   * next page; the source is cancelled afterwards.
+   *
+   * @param groups the groups, sorted by {@link #COMPARATOR}
+   * @param size the size of the page
+   * @return the page
+   */
+  Mono<GroupPage> page(final Flux<GroupEntity> groups, final int size) {
+    return groups
+        .take(size + 1L)
+        .collectList()
+        .map(list -> {
+          final boolean hasNext = list.size() > size;
+          final List<GroupEntity> content = hasNext ? list.subList(0, size) : list;
+          return new GroupPage(
+              content.stream().map(this::mapToGroup).collect(Collectors.toList()),
+              hasNext ? encodeContinuationToken(content.get(size - 1)) : null);
+        });
+  }
+
+  /**
+   * Subscribes to the group ids of mongodb and to the group ids of ldap at the same time and
+   * collects them. The timeouts are the same as in {@link #merge(Flux, Flux)}.
+   *
+   * @param mongoIds the group ids of mongodb
+   * @param ldapIds the group ids of ldap
+   * @return the group ids and whether they are complete ({@code false}, if a source timed out)
+   */
+  Mono<Tuple2<Set<String>, Boolean>> mergeIds(
+      final Flux<String> mongoIds,
+      final Flux<String> ldapIds) {
+    return Mono.defer(() -> {
+      final AtomicBoolean complete = new AtomicBoolean(true);
+      return Flux
+          .merge(
+              limit(mongoIds, mongoTimeout, "mongodb", complete),
+              limit(ldapIds, ldapTimeout, "ldap", complete))
+          .collect(Collectors.toSet())
+          .map(ids -> Tuples.of(ids, complete.get()));
+    });
+  }
+
+  private static <T> Flux<T> limit(
+      final Flux<T> groups,
+      final Duration timeout,
+      final String source) {
+    return limit(groups, timeout, source, null);
+  }
+
+  private static <T> Flux<T> limit(
+      final Flux<T> groups,
+      final Duration timeout,
+      final String source,
+      final AtomicBoolean complete) {
+    if (timeout == null || timeout.isZero() || timeout.isNegative()) {
+      return groups;
+    }
+    return groups.takeUntilOther(Mono.delay(timeout)
+        .doOnNext(tick -> {
+          log.warn("Getting groups from {} timed out after {}.", source, timeout);
+          if (complete != null) {
+            complete.set(false);
+          }
+        }));
+  }
+
+  private static <T> Flux<T> limitOrFail(
+      final Flux<T> groups,
+      final Duration timeout,
+      final String source) {
+    return Flux.defer(() -> {
+      final AtomicBoolean complete = new AtomicBoolean(true);
+      return limit(groups, timeout, source, complete)
+          .concatWith(Mono.defer(() -> complete.get()
+              ? Mono.empty()
+              : Mono.error(new ResponseStatusException(
+                  HttpStatus.GATEWAY_TIMEOUT,
+                  "Getting groups from " + source + " timed out after " + timeout + "."))));
+    });
   }
 
   private Group prepareGroup(final Supplier<Group> groupSupplier) {
@@ -139,11 +510,7 @@ abstract class AbstractGroupController {
    * @return the group representation
    */
   Group mapToGroup(final GroupEntity source) {
-    Group destination = new Group();
-    destination.setMembers(new ArrayList<>());
-    destination.setOwners(new ArrayList<>());
-    getModelMapper().map(source, destination);
-    return destination;
+    return GroupMapper.toGroup(source);
   }
 
   /**
@@ -153,9 +520,7 @@ abstract class AbstractGroupController {
    * @return the group entity
    */
   GroupEntity mapToGroupEntity(final Group source) {
-    GroupEntity destination = new GroupEntity();
-    getModelMapper().map(prepareGroup(() -> source), destination);
-    return destination;
+    return GroupMapper.toGroupEntity(prepareGroup(() -> source));
   }
 
   /**
@@ -16,24 +16,55 @@
 
 package org.bremersee.groupman.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.swagger.v3.oas.annotations.Operation;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import lombok.extern.slf4j.Slf4j;
 import org.bremersee.exception.ServiceException;
 import org.bremersee.groupman.api.GroupAdminWebfluxControllerApi;
+import org.bremersee.groupman.config.CodecConfiguration;
 import org.bremersee.groupman.model.Group;
 import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupBulkWrite;
+import org.bremersee.groupman.repository.GroupBulkWriteResult;
+import org.bremersee.groupman.repository.GroupBulkWriteResult.Outcome;
+import org.bremersee.groupman.repository.GroupChange;
 import org.bremersee.groupman.repository.GroupEntity;
 import org.bremersee.groupman.repository.GroupRepository;
+import org.bremersee.groupman.repository.cache.GroupCache;
 import org.bremersee.groupman.repository.ldap.GroupLdapRepository;
 import org.bremersee.security.core.UserContext;
-import org.modelmapper.ModelMapper;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 /**
  * The group controller for administration purposes.
@@ -46,31 +77,97 @@ public class GroupAdminController
     extends AbstractGroupController
     implements GroupAdminWebfluxControllerApi {
 
+  private static final String NOT_EXECUTED = "A previous operation failed.";
+
+  private final MeterRegistry meterRegistry;
+
+  private final Validator validator;
+
+  private final int bulkBatchSize;
+
   /**
    * Instantiates a new group admin controller.
    *
    * @param groupRepository the group repository
    * @param groupLdapRepository the group ldap repository
-   * @param modelMapper the model mapper
+   * @param groupCache the group cache
    * @param localRole the local role
+   * @param mongoTimeout the maximum time to wait for mongodb in a merged query
+   * @param ldapTimeout the maximum time to wait for ldap in a merged query
+   * @param unknownIdTimeToLive how long an id, that was not found, is remembered as unknown
+   * @param meterRegistry the meter registry
+   * @param validator the validator of the groups of the bulk operations
+   * @param bulkBatchSize the maximum number of operations of one bulk write
    */
   public GroupAdminController(
       GroupRepository groupRepository,
       GroupLdapRepository groupLdapRepository,
-      ModelMapper modelMapper,
-      @Value("${bremersee.groupman.local-role:ROLE_LOCAL_USER}") String localRole) {
-    super(groupRepository, groupLdapRepository, modelMapper, localRole);
+      GroupCache groupCache,
+      @Value("${bremersee.groupman.local-role:ROLE_LOCAL_USER}") String localRole,
+      @Value("${bremersee.groupman.mongo-timeout:30s}") Duration mongoTimeout,
+      @Value("${bremersee.groupman.ldap-timeout:10s}") Duration ldapTimeout,
+      @Value("${bremersee.groupman.unknown-id-time-to-live:1m}") Duration unknownIdTimeToLive,
+      MeterRegistry meterRegistry,
+      Validator validator,
+      @Value("${bremersee.groupman.bulk-batch-size:500}") int bulkBatchSize) {
+    super(groupRepository, groupLdapRepository, groupCache, localRole,
+        mongoTimeout, ldapTimeout, unknownIdTimeToLive);
+    Assert.isTrue(bulkBatchSize > 0, "Bulk batch size must be greater than zero.");
+    this.meterRegistry = meterRegistry;
+    this.validator = validator;
+    this.bulkBatchSize = bulkBatchSize;
   }
 
   @Override
   public Flux<Group> findGroups() {
-    return getGroupRepository()
-        .findAll()
-        .concatWith(getGroupLdapRepository().findAll())
-        .sort(COMPARATOR)
+    return merge(getGroupRepository().findAll(SORT), getGroupLdapRepository().findAll())
         .map(this::mapToGroup);
   }
 
+  /**
+   * Finds all groups and writes them as newline delimited json or as smile. Mongodb and ldap are
+   * read at the same time; with newline delimited json every group is sent, as soon as its
+   * position in the sort order is known.
+   *
+   * @return the groups
+   */
+  @Operation(
+      summary = "Find all groups as stream.",
+      operationId = "findGroupsAsStream")
+  @GetMapping(
+      path = "/api/admin/groups",
+      produces = {
+          CodecConfiguration.APPLICATION_NDJSON_VALUE,
+          CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Flux<Group> findGroupsAsStream() {
+    return findGroups();
+  }
+
+  /**
+   * Finds a page of all groups.
+   *
+   * @param limit the maximum number of groups
+   * @param token the continuation token of the previous page (missing for the first page)
+   * @return the page
+   */
+  @Operation(
+      summary = "Find a page of all groups.",
+      operationId = "findGroupPage")
+  @GetMapping(
+      path = "/api/admin/groups/f/page",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<GroupPage> findGroupPage(
+      @RequestParam(name = "limit", required = false) Integer limit,
+      @RequestParam(name = "token", required = false) String token) {
+    final GroupEntity after = decodeContinuationToken(token);
+    final int size = pageSize(limit);
+    return page(
+        mergePage(
+            getGroupRepository().findPage(null, after, size + 1),
+            getGroupLdapRepository().findAllAfter(after)),
+        size);
+  }
+
   @Override
   public Mono<Group> addGroup(Group group) {
 
@@ -92,7 +189,8 @@ public class GroupAdminController
     if (!StringUtils.hasText(group.getCreatedBy())) {
       group.setCreatedBy(userContext.getName());
     }
-    return getGroupRepository().save(mapToGroupEntity(group));
+    return getGroupRepository().save(mapToGroupEntity(group))
+        .flatMap(groupEntity -> changed(groupEntity, groupEntity.getMembers()));
   }
 
   @Override
@@ -110,21 +208,407 @@ public class GroupAdminController
     }
     return getGroupRepository().findById(groupId)
         .switchIfEmpty(Mono.error(() -> ServiceException.notFound("Group", groupId)))
-        .map(existingGroup -> updateGroup(group, () -> existingGroup))
-        .map(existingGroup -> {
+        .flatMap(existingGroup -> {
+          final Set<String> formerMembers = existingGroup.getMembers();
+          updateGroup(group, () -> existingGroup);
           if (StringUtils.hasText(group.getCreatedBy())) {
             existingGroup.setCreatedBy(group.getCreatedBy());
           }
-          return existingGroup;
+          return getGroupRepository().save(existingGroup)
+              .flatMap(savedGroup -> changed(
+                  savedGroup, formerMembers, savedGroup.getMembers()));
         })
-        .flatMap(existingGroup -> getGroupRepository().save(existingGroup))
         .map(this::mapToGroup);
   }
 
   @Override
   public Mono<Void> removeGroup(String groupId) {
 
-    return getGroupRepository().deleteById(groupId);
+    return getGroupRepository().findById(groupId)
+        .flatMap(groupEntity -> getGroupRepository().deleteById(groupId)
+            .then(deleted(groupEntity)))
+        .then();
+  }
+
+  /**
+   * Adds members to a group.
+   *
+   * @param groupId the group id
+   * @param members the members to add
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Add members to a group.",
+      operationId = "addMembersOfGroup")
+  @PostMapping(
+      path = "/api/admin/groups/{id}/members",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> addMembers(
+      @PathVariable("id") String groupId,
+      @RequestBody List<String> members) {
+    return getGroupRepository().addMembers(groupId, members, null)
+        .flatMap(groupEntity -> changed(groupEntity, members))
+        .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, null)))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Removes members from a group.
+   *
+   * @param groupId the group id
+   * @param members the members to remove
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Remove members from a group.",
+      operationId = "removeMembersOfGroup")
+  @DeleteMapping(
+      path = "/api/admin/groups/{id}/members",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> removeMembers(
+      @PathVariable("id") String groupId,
+      @RequestParam("name") List<String> members) {
+    return getGroupRepository().removeMembers(groupId, members, null)
+        .flatMap(groupEntity -> changed(groupEntity, members))
+        .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, null)))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Adds owners to a group.
+   *
+   * @param groupId the group id
+   * @param owners the owners to add
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Add owners to a group.",
+      operationId = "addOwnersOfGroup")
+  @PostMapping(
+      path = "/api/admin/groups/{id}/owners",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> addOwners(
+      @PathVariable("id") String groupId,
+      @RequestBody List<String> owners) {
+    return getGroupRepository().addOwners(groupId, owners, null)
+        .flatMap(this::changed)
+        .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, null)))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Removes owners from a group. The last owner cannot be removed.
+   *
+   * @param groupId the group id
+   * @param owners the owners to remove
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Remove owners from a group.",
+      operationId = "removeOwnersOfGroup")
+  @DeleteMapping(
+      path = "/api/admin/groups/{id}/owners",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> removeOwners(
+      @PathVariable("id") String groupId,
+      @RequestParam("name") List<String> owners) {
+    return getGroupRepository().removeOwners(groupId, owners, null)
+        .flatMap(this::changed)
+        .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, null)))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Creates, updates and deletes groups in bulk. The operations are validated and written in
+   * batches with one bulk write per batch. The result of every operation is returned in the
+   * order of the operations. The ids of the updated and deleted groups must be unique within a
+   * batch.
+   *
+   * <p>In an ordered execution, the first invalid operation (status 400 or 404) or the first
+   * operation, that cannot be written (e.g. a duplicate), stops the execution: all following
+   * operations, in the same and in the later batches, are not executed (status 424). An update,
+   * whose group was modified (status 409) or deleted (status 404) by someone else in the
+   * meantime, does not stop the execution, neither in the same nor in the later batches.
+   *
+   * @param operations the operations
+   * @param ordered if {@code true} (the default), the execution stops at the first failed
+   *     operation; otherwise all operations are executed
+   * @return the results of the operations
+   */
+  @Operation(
+      summary = "Create, update and delete groups in bulk.",
+      operationId = "executeBulkOperations")
+  @PostMapping(
+      path = "/api/admin/groups/bulk",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, CodecConfiguration.APPLICATION_NDJSON_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, CodecConfiguration.APPLICATION_NDJSON_VALUE})
+  public Flux<GroupBulkResult> executeBulkOperations(
+      @RequestBody Flux<GroupBulkOperation> operations,
+      @RequestParam(name = "ordered", defaultValue = "true") boolean ordered) {
+
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    return getCaller().manyWithUserContext(userContext -> operations
+        .index()
+        .buffer(bulkBatchSize)
+        .concatMap(batch -> executeBulkOperations(batch, ordered, failed, userContext)));
+  }
+
+  private Flux<GroupBulkResult> executeBulkOperations(
+      List<Tuple2<Long, GroupBulkOperation>> batch,
+      boolean ordered,
+      AtomicBoolean failed,
+      UserContext userContext) {
+
+    if (ordered && failed.get()) {
+      return Flux.fromIterable(batch)
+          .map(item -> bulkResult(item, HttpStatus.FAILED_DEPENDENCY, NOT_EXECUTED));
+    }
+    final List<String> ids = batch.stream()
+        .map(Tuple2::getT2)
+        .filter(operation -> operation.getType() == GroupBulkOperation.Type.UPDATE
+            || operation.getType() == GroupBulkOperation.Type.DELETE)
+        .map(GroupBulkOperation::getId)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+    final Mono<Map<String, GroupEntity>> existingGroups = ids.isEmpty()
+        ? Mono.just(Collections.emptyMap())
+        : getGroupRepository().findByIdIn(ids, SORT).collectMap(GroupEntity::getId);
+    return existingGroups.flatMapMany(groups -> executeBulkOperations(
+        batch, groups, ordered, failed, userContext));
+  }
+
+  private Flux<GroupBulkResult> executeBulkOperations(
+      List<Tuple2<Long, GroupBulkOperation>> batch,
+      Map<String, GroupEntity> existingGroups,
+      boolean ordered,
+      AtomicBoolean failed,
+      UserContext userContext) {
+
+    final GroupBulkResult[] results = new GroupBulkResult[batch.size()];
+    final List<GroupBulkWrite> writes = new ArrayList<>(batch.size());
+    final List<Integer> positions = new ArrayList<>(batch.size());
+    final Set<String> duplicateIds = duplicateIds(batch);
+    boolean invalid = false;
+    for (int i = 0; i < batch.size(); i++) {
+      final Tuple2<Long, GroupBulkOperation> item = batch.get(i);
+      if (invalid && ordered) {
+        results[i] = bulkResult(item, HttpStatus.FAILED_DEPENDENCY, NOT_EXECUTED);
+        continue;
+      }
+      results[i] = validate(item.getT2(), existingGroups, duplicateIds);
+      if (results[i] != null) {
+        results[i].setIndex(item.getT1());
+        invalid = true;
+      } else {
+        writes.add(toBulkWrite(item.getT2(), existingGroups, userContext));
+        positions.add(i);
+      }
+    }
+    final boolean stop = invalid;
+    final Timer.Sample sample = Timer.start(meterRegistry);
+    return getGroupRepository().bulkWrite(writes, ordered)
+        .doOnNext(writeResults -> sample.stop(bulkWriteTimer(writeResults.stream()
+            .allMatch(writeResult -> writeResult.getOutcome() == Outcome.SUCCESS)
+            ? "success"
+            : "failure")))
+        .doOnError(error -> sample.stop(bulkWriteTimer("error")))
+        .flatMap(writeResults -> changed(writes, writeResults, existingGroups)
+            .thenReturn(writeResults))
+        .flatMapIterable(writeResults -> {
+          boolean writeFailed = false;
+          for (int j = 0; j < writeResults.size(); j++) {
+            final int i = positions.get(j);
+            final GroupBulkWriteResult writeResult = writeResults.get(j);
+            results[i] = bulkResult(batch.get(i), writes.get(j), writeResult);
+            // a modification or deletion by someone else does not stop an ordered execution
+            writeFailed = writeFailed
+                || (writeResult.getOutcome() != Outcome.SUCCESS
+                && writeResult.getOutcome() != Outcome.CONFLICT
+                && writeResult.getOutcome() != Outcome.NOT_FOUND);
+          }
+          final List<GroupBulkResult> list = Arrays.asList(results);
+          if (stop || writeFailed) {
+            failed.set(true);
+          }
+          list.forEach(result -> meterRegistry.counter(
+              "groups_bulk_operations",
+              "type", String.valueOf(result.getType()),
+              "status", String.valueOf(result.getStatus()))
+              .increment());
+          return list;
+        });
+  }
+
+  private Timer bulkWriteTimer(String outcome) {
+    return Timer.builder("groups_bulk_write")
+        .description("The time of one bulk write of groups.")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  private static Set<String> duplicateIds(List<Tuple2<Long, GroupBulkOperation>> batch) {
+    final Set<String> ids = new HashSet<>();
+    final Set<String> duplicateIds = new HashSet<>();
+    for (Tuple2<Long, GroupBulkOperation> item : batch) {
+      final GroupBulkOperation operation = item.getT2();
+      if (operation != null
+          && operation.getType() != GroupBulkOperation.Type.CREATE
+          && operation.getId() != null
+          && !ids.add(operation.getId())) {
+        duplicateIds.add(operation.getId());
+      }
+    }
+    return duplicateIds;
+  }
+
+  private Mono<Void> changed(
+      List<GroupBulkWrite> writes,
+      List<GroupBulkWriteResult> writeResults,
+      Map<String, GroupEntity> existingGroups) {
+
+    // only the written groups are changed, the failed writes must not wake up the listeners
+    return Flux.range(0, Math.min(writes.size(), writeResults.size()))
+        .filter(j -> writeResults.get(j).getOutcome() == Outcome.SUCCESS)
+        .map(writes::get)
+        .map(write -> {
+          final Set<String> users = new HashSet<>();
+          if (write.getGroup() != null && write.getGroup().getMembers() != null) {
+            users.addAll(write.getGroup().getMembers());
+          }
+          final GroupEntity existingGroup = existingGroups.get(write.getId());
+          if (existingGroup != null && existingGroup.getMembers() != null) {
+            users.addAll(existingGroup.getMembers());
+          }
+          return new GroupChange(
+              write.getId(),
+              write.getType() == GroupBulkWrite.Type.DELETE,
+              users);
+        })
+        .concatMap(this::changed)
+        .then();
+  }
+
+  private GroupBulkResult validate(
+      GroupBulkOperation operation,
+      Map<String, GroupEntity> existingGroups,
+      Set<String> duplicateIds) {
+
+    if (operation == null || operation.getType() == null) {
+      return new GroupBulkResult(0, null, null, HttpStatus.BAD_REQUEST.value(),
+          "The type of the operation is missing.");
+    }
+    final GroupBulkOperation.Type type = operation.getType();
+    final Group group = operation.getGroup();
+    if (type != GroupBulkOperation.Type.DELETE) {
+      if (group == null || !StringUtils.hasText(group.getName())) {
+        return new GroupBulkResult(0, type, operation.getId(), HttpStatus.BAD_REQUEST.value(),
+            "The group or its name is missing.");
+      }
+      if (Source.LDAP.equals(group.getSource())) {
+        return new GroupBulkResult(0, type, operation.getId(), HttpStatus.BAD_REQUEST.value(),
+            "A group with source 'LDAP' is not supported.");
+      }
+      final Set<ConstraintViolation<Group>> violations = validator.validate(group);
+      if (!violations.isEmpty()) {
+        return new GroupBulkResult(0, type, operation.getId(), HttpStatus.BAD_REQUEST.value(),
+            violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", ")));
+      }
+    }
+    if (type != GroupBulkOperation.Type.CREATE && duplicateIds.contains(operation.getId())) {
+      return new GroupBulkResult(0, type, operation.getId(), HttpStatus.BAD_REQUEST.value(),
+          "The group is modified by more than one operation of the batch.");
+    }
+    if (type != GroupBulkOperation.Type.CREATE
+        && !existingGroups.containsKey(operation.getId())) {
+      return new GroupBulkResult(0, type, operation.getId(), HttpStatus.NOT_FOUND.value(),
+          "The group does not exist.");
+    }
+    return null;
+  }
+
+  private GroupBulkWrite toBulkWrite(
+      GroupBulkOperation operation,
+      Map<String, GroupEntity> existingGroups,
+      UserContext userContext) {
+
+    final Group group = operation.getGroup();
+    switch (operation.getType()) {
+      case CREATE:
+        group.setId(new ObjectId().toHexString());
+        group.setCreatedAt(OffsetDateTime.now(ZoneId.of("UTC")));
+        group.setModifiedAt(group.getCreatedAt());
+        group.setSource(Source.INTERNAL);
+        if (!StringUtils.hasText(group.getCreatedBy())) {
+          group.setCreatedBy(userContext.getName());
+        }
+        final GroupEntity newGroup = mapToGroupEntity(group);
+        newGroup.setVersion(0L);
+        return GroupBulkWrite.insert(newGroup);
+      case UPDATE:
+        final GroupEntity existingGroup = updateGroup(
+            group,
+            () -> existingGroups.get(operation.getId()).copy());
+        if (StringUtils.hasText(group.getCreatedBy())) {
+          existingGroup.setCreatedBy(group.getCreatedBy());
+        }
+        final Long expectedVersion = existingGroup.getVersion();
+        existingGroup.setVersion(expectedVersion != null ? expectedVersion + 1 : 1L);
+        return GroupBulkWrite.replace(existingGroup, expectedVersion);
+      default:
+        return GroupBulkWrite.delete(operation.getId());
+    }
+  }
+
+  private static GroupBulkResult bulkResult(
+      Tuple2<Long, GroupBulkOperation> item,
+      HttpStatus status,
+      String message) {
+
+    final GroupBulkOperation operation = item.getT2();
+    return new GroupBulkResult(
+        item.getT1(),
+        operation != null ? operation.getType() : null,
+        operation != null ? operation.getId() : null,
+        status.value(),
+        message);
+  }
+
+  private static GroupBulkResult bulkResult(
+      Tuple2<Long, GroupBulkOperation> item,
+      GroupBulkWrite write,
+      GroupBulkWriteResult writeResult) {
+
+    final HttpStatus status;
+    switch (writeResult.getOutcome()) {
+      case SUCCESS:
+        status = write.getType() == GroupBulkWrite.Type.INSERT
+            ? HttpStatus.CREATED
+            : HttpStatus.OK;
+        break;
+      case NOT_FOUND:
+        status = HttpStatus.NOT_FOUND;
+        break;
+      case CONFLICT:
+      case DUPLICATE:
+        status = HttpStatus.CONFLICT;
+        break;
+      case NOT_EXECUTED:
+        status = HttpStatus.FAILED_DEPENDENCY;
+        break;
+      default:
+        status = HttpStatus.BAD_REQUEST;
+    }
+    return new GroupBulkResult(
+        item.getT1(),
+        item.getT2().getType(),
+        write.getId(),
+        status.value(),
+        writeResult.getMessage());
   }
 
   @Override
@@ -133,4 +617,23 @@ public class GroupAdminController
         .map(this::mapToGroup);
   }
 
+  /**
+   * Finds the groups with the given ids as newline delimited json or as smile.
+   *
+   * @param ids the ids
+   * @return the groups
+   */
+  @Operation(
+      summary = "Find groups by ids as stream.",
+      operationId = "findGroupsByIdsAsStream")
+  @GetMapping(
+      path = "/api/admin/groups/f",
+      produces = {
+          CodecConfiguration.APPLICATION_NDJSON_VALUE,
+          CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Flux<Group> findGroupsByIdsAsStream(
+      @RequestParam(name = "id", required = false) List<String> ids) {
+    return findGroupsByIds(ids);
+  }
+
 }
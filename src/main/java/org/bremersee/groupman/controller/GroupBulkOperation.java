@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bremersee.groupman.model.Group;
+
+/**
+ * An operation of a bulk request of the group administration.
+ *
+ * @author Christian Bremer
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupBulkOperation {
+
+  /**
+   * The type of the operation.
+   */
+  public enum Type {
+
+    /**
+     * Creates the group.
+     */
+    CREATE,
+
+    /**
+     * Updates the group with the id.
+     */
+    UPDATE,
+
+    /**
+     * Deletes the group with the id.
+     */
+    DELETE
+  }
+
+  private Type type;
+
+  // The id of the group, that should be updated or deleted
+  private String id;
+
+  // The group, that should be created or updated
+  private Group group;
+
+}
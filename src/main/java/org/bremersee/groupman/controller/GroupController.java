@@ -16,26 +16,45 @@
 
 package org.bremersee.groupman.controller;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.swagger.v3.oas.annotations.Operation;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.bremersee.exception.ServiceException;
 import org.bremersee.groupman.api.GroupWebfluxControllerApi;
+import org.bremersee.groupman.config.CodecConfiguration;
 import org.bremersee.groupman.model.Group;
 import org.bremersee.groupman.model.Source;
 import org.bremersee.groupman.model.Status;
+import org.bremersee.groupman.repository.GroupChangeBroadcaster;
 import org.bremersee.groupman.repository.GroupEntity;
 import org.bremersee.groupman.repository.GroupRepository;
+import org.bremersee.groupman.repository.cache.GroupCache;
 import org.bremersee.groupman.repository.ldap.GroupLdapRepository;
 import org.bremersee.security.core.UserContext;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 /**
  * The group controller.
@@ -50,24 +69,59 @@ public class GroupController
 
   private final Long maxOwnedGroups;
 
+  private final AsyncCache<String, Long> ldapMembershipCounts;
+
+  private final GroupChangeBroadcaster groupChangeBroadcaster;
+
+  private final Duration membershipStreamRefreshInterval;
+
   /**
    * Instantiates a new group controller.
    *
    * @param groupRepository the group repository
    * @param groupLdapRepository the group ldap repository
-   * @param modelMapper the model mapper
+   * @param groupCache the group cache
    * @param localRole if a role name is given, ldap will only be called, if the user has this
    *     role; if the role name is null or empty, ldap will always be called
    * @param maxOwnedGroups the max owned groups
+   * @param mongoTimeout the maximum time to wait for mongodb in a merged query
+   * @param ldapTimeout the maximum time to wait for ldap in a merged query
+   * @param unknownIdTimeToLive how long an id, that was not found, is remembered as unknown
+   * @param ldapMembershipCountTimeToLive how long the ldap membership count of a user is cached;
+   *     a zero or negative value disables the cache
+   * @param groupChangeBroadcaster the group change broadcaster
+   * @param membershipStreamRefreshInterval the interval, in which the membership stream reloads
+   *     the membership ids (to see changes in ldap) and sends a heartbeat
    */
   public GroupController(
       GroupRepository groupRepository,
       GroupLdapRepository groupLdapRepository,
-      ModelMapper modelMapper,
+      GroupCache groupCache,
       @Value("${bremersee.groupman.local-role:ROLE_LOCAL_USER}") String localRole,
-      @Value("${bremersee.groupman.max-owned-groups:-1}") Long maxOwnedGroups) {
-    super(groupRepository, groupLdapRepository, modelMapper, localRole);
+      @Value("${bremersee.groupman.max-owned-groups:-1}") Long maxOwnedGroups,
+      @Value("${bremersee.groupman.mongo-timeout:30s}") Duration mongoTimeout,
+      @Value("${bremersee.groupman.ldap-timeout:10s}") Duration ldapTimeout,
+      @Value("${bremersee.groupman.unknown-id-time-to-live:1m}") Duration unknownIdTimeToLive,
+      @Value("${bremersee.groupman.ldap-membership-count-time-to-live:1m}")
+          Duration ldapMembershipCountTimeToLive,
+      GroupChangeBroadcaster groupChangeBroadcaster,
+      @Value("${bremersee.groupman.membership-stream-refresh-interval:30s}")
+          Duration membershipStreamRefreshInterval) {
+    super(groupRepository, groupLdapRepository, groupCache, localRole,
+        mongoTimeout, ldapTimeout, unknownIdTimeToLive);
     this.maxOwnedGroups = maxOwnedGroups != null ? maxOwnedGroups : -1L;
+    if (ldapMembershipCountTimeToLive == null
+        || ldapMembershipCountTimeToLive.isZero()
+        || ldapMembershipCountTimeToLive.isNegative()) {
+      this.ldapMembershipCounts = null;
+    } else {
+      this.ldapMembershipCounts = Caffeine.newBuilder()
+          .expireAfterWrite(ldapMembershipCountTimeToLive.toNanos(), TimeUnit.NANOSECONDS)
+          .maximumSize(10000L)
+          .buildAsync();
+    }
+    this.groupChangeBroadcaster = groupChangeBroadcaster;
+    this.membershipStreamRefreshInterval = membershipStreamRefreshInterval;
   }
 
   @Override
@@ -93,7 +147,8 @@ public class GroupController
                     "The maximum number of groups has been reached.",
                     "GRP:MAX_OWNED_GROUPS"))
                     : Mono.just(newGroup)))
-        .flatMap(newGroup -> getGroupRepository().save(mapToGroupEntity(newGroup)));
+        .flatMap(newGroup -> getGroupRepository().save(mapToGroupEntity(newGroup)))
+        .flatMap(groupEntity -> changed(groupEntity, groupEntity.getMembers()));
   }
 
   @Override
@@ -102,6 +157,22 @@ public class GroupController
         .map(this::mapToGroup);
   }
 
+  /**
+   * Gets the group with the given id as cbor or as smile.
+   *
+   * @param groupId the group id
+   * @return the group
+   */
+  @Operation(
+      summary = "Get group by id as cbor or smile.",
+      operationId = "getGroupByIdAsBinary")
+  @GetMapping(
+      path = "/api/groups/{id}",
+      produces = {MediaType.APPLICATION_CBOR_VALUE, CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Mono<Group> getGroupByIdAsBinary(@PathVariable("id") String groupId) {
+    return getGroupById(groupId);
+  }
+
   @Override
   public Mono<Group> updateGroup(String groupId, Group group) {
     return getCaller()
@@ -117,7 +188,12 @@ public class GroupController
         .switchIfEmpty(Mono.error(() -> ServiceException.notFound("Group", groupId)))
         .filter(groupEntity -> groupEntity.getOwners().contains(userContext.getName()))
         .switchIfEmpty(Mono.error(() -> ServiceException.forbidden("Group", groupId)))
-        .flatMap(groupEntity -> getGroupRepository().save(updateGroup(group, () -> groupEntity)));
+        .flatMap(groupEntity -> {
+          final Set<String> formerMembers = groupEntity.getMembers();
+          return getGroupRepository().save(updateGroup(group, () -> groupEntity))
+              .flatMap(savedGroup -> changed(
+                  savedGroup, formerMembers, savedGroup.getMembers()));
+        });
   }
 
   @Override
@@ -131,7 +207,108 @@ public class GroupController
         .switchIfEmpty(Mono.error(() -> ServiceException.notFound("Group", groupId)))
         .filter(groupEntity -> groupEntity.getOwners().contains(userContext.getName()))
         .switchIfEmpty(Mono.error(() -> ServiceException.forbidden("Group", groupId)))
-        .flatMap(groupEntity -> getGroupRepository().delete(groupEntity));
+        .flatMap(groupEntity -> getGroupRepository().delete(groupEntity)
+            .then(deleted(groupEntity)))
+        .then();
+  }
+
+  /**
+   * Adds members to a group, that is owned by the current user.
+   *
+   * @param groupId the group id
+   * @param members the members to add
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Add members to a group.",
+      operationId = "addGroupMembers")
+  @PostMapping(
+      path = "/api/groups/{id}/members",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> addMembers(
+      @PathVariable("id") String groupId,
+      @RequestBody List<String> members) {
+    return getCaller()
+        .oneWithUserContext(userContext -> getGroupRepository()
+            .addMembers(groupId, members, userContext.getName())
+            .flatMap(groupEntity -> changed(groupEntity, members))
+            .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, userContext.getName()))))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Removes members from a group, that is owned by the current user.
+   *
+   * @param groupId the group id
+   * @param members the members to remove
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Remove members from a group.",
+      operationId = "removeGroupMembers")
+  @DeleteMapping(
+      path = "/api/groups/{id}/members",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> removeMembers(
+      @PathVariable("id") String groupId,
+      @RequestParam("name") List<String> members) {
+    return getCaller()
+        .oneWithUserContext(userContext -> getGroupRepository()
+            .removeMembers(groupId, members, userContext.getName())
+            .flatMap(groupEntity -> changed(groupEntity, members))
+            .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, userContext.getName()))))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Adds owners to a group, that is owned by the current user.
+   *
+   * @param groupId the group id
+   * @param owners the owners to add
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Add owners to a group.",
+      operationId = "addGroupOwners")
+  @PostMapping(
+      path = "/api/groups/{id}/owners",
+      consumes = MediaType.APPLICATION_JSON_VALUE,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> addOwners(
+      @PathVariable("id") String groupId,
+      @RequestBody List<String> owners) {
+    return getCaller()
+        .oneWithUserContext(userContext -> getGroupRepository()
+            .addOwners(groupId, owners, userContext.getName())
+            .flatMap(this::changed)
+            .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, userContext.getName()))))
+        .map(this::mapToGroup);
+  }
+
+  /**
+   * Removes owners from a group, that is owned by the current user. The last owner cannot be
+   * removed.
+   *
+   * @param groupId the group id
+   * @param owners the owners to remove
+   * @return the modified group
+   */
+  @Operation(
+      summary = "Remove owners from a group.",
+      operationId = "removeGroupOwners")
+  @DeleteMapping(
+      path = "/api/groups/{id}/owners",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<Group> removeOwners(
+      @PathVariable("id") String groupId,
+      @RequestParam("name") List<String> owners) {
+    return getCaller()
+        .oneWithUserContext(userContext -> getGroupRepository()
+            .removeOwners(groupId, owners, userContext.getName())
+            .flatMap(this::changed)
+            .switchIfEmpty(Mono.defer(() -> unmodifiedGroup(groupId, userContext.getName()))))
+        .map(this::mapToGroup);
   }
 
   @Override
@@ -140,6 +317,25 @@ public class GroupController
         .map(this::mapToGroup);
   }
 
+  /**
+   * Gets the groups with the given ids as newline delimited json or as smile.
+   *
+   * @param ids the ids
+   * @return the groups
+   */
+  @Operation(
+      summary = "Get groups by ids as stream.",
+      operationId = "getGroupsByIdsAsStream")
+  @GetMapping(
+      path = "/api/groups/f",
+      produces = {
+          CodecConfiguration.APPLICATION_NDJSON_VALUE,
+          CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Flux<Group> getGroupsByIdsAsStream(
+      @RequestParam(name = "id", required = false) List<String> ids) {
+    return getGroupsByIds(ids);
+  }
+
   @Override
   public Flux<Group> getEditableGroups() {
     return getCaller()
@@ -158,11 +354,28 @@ public class GroupController
         .map(this::mapToGroup);
   }
 
+  /**
+   * Gets the usable groups of the current user as newline delimited json or as smile.
+   *
+   * @return the usable groups
+   */
+  @Operation(
+      summary = "Get usable groups as stream.",
+      operationId = "getUsableGroupsAsStream")
+  @GetMapping(
+      path = "/api/groups/f/usable",
+      produces = {
+          CodecConfiguration.APPLICATION_NDJSON_VALUE,
+          CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Flux<Group> getUsableGroupsAsStream() {
+    return getUsableGroups();
+  }
+
   private Flux<GroupEntity> getUsableGroups(UserContext userContext) {
     final String name = userContext.getName();
-    return getGroupRepository().findByOwnersIsContainingOrMembersIsContaining(name, name)
-        .concatWith(getGroupLdapRepository().findByMembersIsContaining(name))
-        .sort(COMPARATOR);
+    return merge(
+        getGroupRepository().findByOwnersIsContainingOrMembersIsContaining(name, name, SORT),
+        getGroupLdapRepository().findByMembersIsContaining(name));
   }
 
   @Override
@@ -172,20 +385,203 @@ public class GroupController
         .map(this::mapToGroup);
   }
 
+  /**
+   * Gets the groups, the current user is a member of, as newline delimited json or as smile.
+   *
+   * @return the groups
+   */
+  @Operation(
+      summary = "Get membership as stream.",
+      operationId = "getMembershipAsStream")
+  @GetMapping(
+      path = "/api/groups/f/membership",
+      produces = {
+          CodecConfiguration.APPLICATION_NDJSON_VALUE,
+          CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Flux<Group> getMembershipAsStream() {
+    return getMembership();
+  }
+
   private Flux<GroupEntity> getMembership(UserContext userContext) {
     final String name = userContext.getName();
     if (userContext.hasRole(getLocalUserRole())) {
-      return getGroupRepository().findByMembersIsContaining(name)
-          .concatWith(getGroupLdapRepository().findByMembersIsContaining(name))
-          .sort(COMPARATOR);
+      return merge(
+          getGroupRepository().findByMembersIsContaining(name, SORT),
+          getGroupLdapRepository().findByMembersIsContaining(name));
     }
-    return getGroupRepository().findByMembersIsContaining(name).sort(COMPARATOR);
+    return getGroupRepository().findByMembersIsContaining(name, SORT);
+  }
+
+  /**
+   * Gets a page of the groups, that are owned by the current user.
+   *
+   * @param limit the maximum number of groups
+   * @param token the continuation token of the previous page (missing for the first page)
+   * @return the page
+   */
+  @Operation(
+      summary = "Get a page of the editable groups.",
+      operationId = "getEditableGroupPage")
+  @GetMapping(
+      path = "/api/groups/f/editable/page",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<GroupPage> getEditableGroupPage(
+      @RequestParam(name = "limit", required = false) Integer limit,
+      @RequestParam(name = "token", required = false) String token) {
+    final GroupEntity after = decodeContinuationToken(token);
+    final int size = pageSize(limit);
+    return getCaller().oneWithUserContext(userContext -> page(
+        getGroupRepository().findPage(
+            Criteria.where("owners").is(userContext.getName()), after, size + 1),
+        size));
+  }
+
+  /**
+   * Gets a page of the groups, that are owned by the current user or that have the current user
+   * as member.
+   *
+   * @param limit the maximum number of groups
+   * @param token the continuation token of the previous page (missing for the first page)
+   * @return the page
+   */
+  @Operation(
+      summary = "Get a page of the usable groups.",
+      operationId = "getUsableGroupPage")
+  @GetMapping(
+      path = "/api/groups/f/usable/page",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<GroupPage> getUsableGroupPage(
+      @RequestParam(name = "limit", required = false) Integer limit,
+      @RequestParam(name = "token", required = false) String token) {
+    final GroupEntity after = decodeContinuationToken(token);
+    final int size = pageSize(limit);
+    return getCaller().oneWithUserContext(userContext -> {
+      final String name = userContext.getName();
+      return page(
+          mergePage(
+              getGroupRepository().findPage(
+                  new Criteria().orOperator(
+                      Criteria.where("owners").is(name),
+                      Criteria.where("members").is(name)),
+                  after,
+                  size + 1),
+              getGroupLdapRepository().findByMembersIsContainingAfter(name, after)),
+          size);
+    });
+  }
+
+  /**
+   * Gets a page of the groups, that have the current user as member.
+   *
+   * @param limit the maximum number of groups
+   * @param token the continuation token of the previous page (missing for the first page)
+   * @return the page
+   */
+  @Operation(
+      summary = "Get a page of the groups, the current user is a member of.",
+      operationId = "getMembershipPage")
+  @GetMapping(
+      path = "/api/groups/f/membership/page",
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  public Mono<GroupPage> getMembershipPage(
+      @RequestParam(name = "limit", required = false) Integer limit,
+      @RequestParam(name = "token", required = false) String token) {
+    final GroupEntity after = decodeContinuationToken(token);
+    final int size = pageSize(limit);
+    return getCaller().oneWithUserContext(userContext -> {
+      final String name = userContext.getName();
+      final Flux<GroupEntity> mongoGroups = getGroupRepository()
+          .findPage(Criteria.where("members").is(name), after, size + 1);
+      if (userContext.hasRole(getLocalUserRole())) {
+        return page(
+            mergePage(
+                mongoGroups,
+                getGroupLdapRepository().findByMembersIsContainingAfter(name, after)),
+            size);
+      }
+      return page(mongoGroups, size);
+    });
   }
 
   @Override
   public Mono<Set<String>> getMembershipIds() {
-    return getCaller().oneWithUserContext(userContext -> getMembership(userContext)
-        .map(GroupEntity::getId).collect(Collectors.toSet()));
+    return getCaller().oneWithUserContext(userContext -> getGroupCache().getMembershipIds(
+        userContext.getName(),
+        userContext.hasRole(getLocalUserRole()),
+        getMembershipIds(userContext)));
+  }
+
+  /**
+   * Gets the ids of the groups, the current user is a member of, as cbor or as smile.
+   *
+   * @return the membership ids
+   */
+  @Operation(
+      summary = "Get membership ids as cbor or smile.",
+      operationId = "getMembershipIdsAsBinary")
+  @GetMapping(
+      path = "/api/groups/f/membership-ids",
+      produces = {MediaType.APPLICATION_CBOR_VALUE, CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Mono<Set<String>> getMembershipIdsAsBinary() {
+    return getMembershipIds();
+  }
+
+  /**
+   * Streams the changes of the membership ids of the current user as server-sent events or as
+   * newline delimited json. The first change is a snapshot of all ids. A following change is sent,
+   * when a group of the current user is written, and in the refresh interval; it contains only
+   * the added and removed ids and is empty, if nothing has been changed (heartbeat).
+   *
+   * @return the membership changes
+   */
+  @Operation(
+      summary = "Stream the changes of the membership ids of the current user.",
+      operationId = "streamMembershipIdChanges")
+  @GetMapping(
+      path = "/api/groups/f/membership-ids/stream",
+      produces = {MediaType.TEXT_EVENT_STREAM_VALUE, CodecConfiguration.APPLICATION_NDJSON_VALUE})
+  public Flux<MembershipChange> streamMembershipIdChanges() {
+    return getCaller().manyWithUserContext(this::streamMembershipIdChanges);
+  }
+
+  private Flux<MembershipChange> streamMembershipIdChanges(UserContext userContext) {
+    final String name = userContext.getName();
+    final boolean ldap = userContext.hasRole(getLocalUserRole());
+    final AtomicReference<Set<String>> lastIds = new AtomicReference<>();
+    return Flux
+        .<Object>merge(
+            groupChangeBroadcaster.changes().filter(change -> change.isRelevantFor(name)),
+            Flux.interval(membershipStreamRefreshInterval))
+        .onBackpressureLatest()
+        .startWith(Boolean.TRUE)
+        .concatMap(trigger -> getGroupCache().getMembershipIds(
+            name,
+            ldap,
+            getMembershipIds(userContext)), 1)
+        .map(ids -> membershipChange(lastIds.getAndSet(ids), ids));
+  }
+
+  private static MembershipChange membershipChange(Set<String> oldIds, Set<String> newIds) {
+    if (oldIds == null) {
+      return new MembershipChange(true, new TreeSet<>(newIds), new TreeSet<>());
+    }
+    final Set<String> added = new TreeSet<>(newIds);
+    added.removeAll(oldIds);
+    final Set<String> removed = new TreeSet<>(oldIds);
+    removed.removeAll(newIds);
+    return new MembershipChange(false, added, removed);
+  }
+
+  private Mono<Tuple2<Set<String>, Boolean>> getMembershipIds(UserContext userContext) {
+    final String name = userContext.getName();
+    if (userContext.hasRole(getLocalUserRole())) {
+      return mergeIds(
+          getGroupRepository().findIdsByMembersIsContaining(name),
+          getGroupLdapRepository().findNamesByMembersIsContaining(name));
+    }
+    return getGroupRepository().findIdsByMembersIsContaining(name)
+        .collect(Collectors.toSet())
+        .map(ids -> Tuples.of(ids, true));
   }
 
   @Override
@@ -193,23 +589,41 @@ public class GroupController
     return getCaller().oneWithUserContext(this::getStatus);
   }
 
+  /**
+   * Gets the status of the current user as cbor or as smile.
+   *
+   * @return the status
+   */
+  @Operation(
+      summary = "Get status as cbor or smile.",
+      operationId = "getStatusAsBinary")
+  @GetMapping(
+      path = "/api/groups/f/status",
+      produces = {MediaType.APPLICATION_CBOR_VALUE, CodecConfiguration.APPLICATION_SMILE_VALUE})
+  public Mono<Status> getStatusAsBinary() {
+    return getStatus();
+  }
+
   private Mono<Status> getStatus(UserContext userContext) {
-    return getGroupRepository().countOwnedGroups(userContext.getName())
-        .zipWith(getMembershipSum(userContext))
+    final String name = userContext.getName();
+    return getGroupRepository().countOwnedGroupsAndMembership(name)
+        .zipWith(userContext.hasRole(getLocalUserRole())
+            ? countLdapMembership(name)
+            : Mono.just(0L))
         .map(sizes -> Status.builder()
-            .ownedGroupSize(sizes.getT1())
-            .membershipSize(sizes.getT2())
+            .ownedGroupSize(sizes.getT1().getOwnedGroups())
+            .membershipSize(sizes.getT1().getMembership() + sizes.getT2())
             .maxOwnedGroups(maxOwnedGroups)
             .build());
   }
 
-  private Mono<Long> getMembershipSum(UserContext userContext) {
-    if (userContext.hasRole(getLocalUserRole())) {
-      return getGroupRepository().countMembership(userContext.getName())
-          .zipWith(getGroupLdapRepository().countMembership(userContext.getName()))
-          .map(sizes -> sizes.getT1() + sizes.getT2());
+  private Mono<Long> countLdapMembership(String name) {
+    if (ldapMembershipCounts == null) {
+      return getGroupLdapRepository().countMembership(name);
     }
-    return getGroupRepository().countMembership(userContext.getName());
+    return Mono.defer(() -> Mono.fromFuture(ldapMembershipCounts.get(
+        name,
+        (key, executor) -> getGroupLdapRepository().countMembership(key).toFuture())));
   }
 
 }
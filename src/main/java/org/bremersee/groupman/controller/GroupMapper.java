@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.repository.GroupEntity;
+
+/**
+ * The mapper between the group entity and the group representation. It does the same as the
+ * model mapper with the converters of
+ * {@link org.bremersee.groupman.config.ModelMapperConfiguration}, but without reflection.
+ *
+ * @author Christian Bremer
+ */
+public final class GroupMapper {
+
+  private GroupMapper() {
+  }
+
+  /**
+   * Maps the group entity to the group representation.
+   *
+   * @param source the group entity
+   * @return the group representation
+   */
+  public static Group toGroup(GroupEntity source) {
+    if (source == null) {
+      return null;
+    }
+    final Group destination = new Group();
+    destination.setId(source.getId());
+    destination.setVersion(source.getVersion());
+    destination.setCreatedBy(source.getCreatedBy());
+    destination.setCreatedAt(toOffsetDateTime(source.getCreatedAt()));
+    destination.setModifiedAt(toOffsetDateTime(source.getModifiedAt()));
+    destination.setSource(source.getSource());
+    destination.setName(source.getName());
+    destination.setDescription(source.getDescription());
+    destination.setMembers(toList(source.getMembers()));
+    destination.setOwners(toList(source.getOwners()));
+    return destination;
+  }
+
+  /**
+   * Maps the group representation to the group entity.
+   *
+   * @param source the group representation
+   * @return the group entity
+   */
+  public static GroupEntity toGroupEntity(Group source) {
+    if (source == null) {
+      return null;
+    }
+    final GroupEntity destination = new GroupEntity();
+    destination.setId(source.getId());
+    destination.setVersion(source.getVersion());
+    destination.setCreatedBy(source.getCreatedBy());
+    destination.setCreatedAt(toDate(source.getCreatedAt()));
+    destination.setModifiedAt(toDate(source.getModifiedAt()));
+    destination.setSource(source.getSource());
+    destination.setName(source.getName());
+    destination.setDescription(source.getDescription());
+    destination.setMembers(toSet(source.getMembers()));
+    destination.setOwners(toSet(source.getOwners()));
+    return destination;
+  }
+
+  private static OffsetDateTime toOffsetDateTime(Date date) {
+    return date != null ? OffsetDateTime.ofInstant(date.toInstant(), ZoneOffset.UTC) : null;
+  }
+
+  private static Date toDate(OffsetDateTime dateTime) {
+    return dateTime != null ? Date.from(dateTime.toInstant()) : null;
+  }
+
+  private static ArrayList<String> toList(Collection<String> values) {
+    return values != null ? new ArrayList<>(values) : new ArrayList<>();
+  }
+
+  private static LinkedHashSet<String> toSet(Collection<String> values) {
+    return values != null ? new LinkedHashSet<>(values) : new LinkedHashSet<>();
+  }
+
+}
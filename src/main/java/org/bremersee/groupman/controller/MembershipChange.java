@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.bremersee.groupman.controller;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of the membership ids of the current user. The first change of a stream is a
+ * snapshot, that contains all ids as added ids; the following changes contain the differences.
+ * A change without added and removed ids is a heartbeat.
+ *
+ * @author Christian Bremer
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MembershipChange {
+
+  // Specifies whether the added ids are all ids of the membership
+  private boolean snapshot;
+
+  private Set<String> added = new LinkedHashSet<>();
+
+  private Set<String> removed = new LinkedHashSet<>();
+
+}
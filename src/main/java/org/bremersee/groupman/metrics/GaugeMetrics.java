@@ -16,16 +16,26 @@
 
 package org.bremersee.groupman.metrics;
 
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Tag;
-import java.util.Collections;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.bremersee.groupman.repository.GroupRepository;
 import org.bremersee.groupman.repository.ldap.GroupLdapRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
- * The gauge metrics.
+ * The gauge metrics. The sizes are counted periodically in the background, so that a scrape
+ * only reads the last counted values and never calls mongodb or ldap.
  *
  * @author Christian Bremer
  */
@@ -33,39 +43,126 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class GaugeMetrics {
 
+  private final GroupRepository groupRepository;
+
+  private final GroupLdapRepository groupLdapRepository;
+
+  private final Duration refreshInterval;
+
+  private final AtomicReference<Count> groupsInDatabase = new AtomicReference<>();
+
+  private final AtomicReference<Count> groupsInDirectory = new AtomicReference<>();
+
+  private Disposable refresh;
+
   /**
    * Instantiates new gauge metrics.
    *
    * @param meterRegistry the meter registry
    * @param groupRepository the group repository
    * @param groupLdapRepository the group ldap repository
+   * @param refreshInterval the interval, in which the sizes are counted
    */
   public GaugeMetrics(
       MeterRegistry meterRegistry,
       GroupRepository groupRepository,
-      GroupLdapRepository groupLdapRepository) {
-
-    meterRegistry.gauge(
-        "groups_size",
-        Collections.singleton(Tag.of("storage", "mongodb")),
-        groupRepository,
-        this::groupsInDatabaseSize);
-
-    meterRegistry.gauge(
-        "groups_size",
-        Collections.singleton(Tag.of("storage", "ldap")),
-        groupLdapRepository,
-        this::groupsInDirectorySize);
+      GroupLdapRepository groupLdapRepository,
+      @Value("${bremersee.groupman.gauge-refresh-interval:1m}") Duration refreshInterval) {
+
+    Assert.isTrue(refreshInterval != null && !refreshInterval.isZero()
+        && !refreshInterval.isNegative(), "Refresh interval must be positive.");
+    this.groupRepository = groupRepository;
+    this.groupLdapRepository = groupLdapRepository;
+    this.refreshInterval = refreshInterval;
+
+    register(meterRegistry, "mongodb", groupsInDatabase);
+    register(meterRegistry, "ldap", groupsInDirectory);
   }
 
-  private double groupsInDatabaseSize(GroupRepository groupRepository) {
-    Long size = groupRepository.count().block();
-    return size != null ? size : 0.;
+  private static void register(
+      MeterRegistry meterRegistry,
+      String storage,
+      AtomicReference<Count> count) {
+
+    Gauge.builder("groups_size", count, ref -> size(ref.get()))
+        .description("The number of groups.")
+        .tag("storage", storage)
+        .register(meterRegistry);
+    Gauge.builder("groups_size_staleness", count, ref -> staleness(ref.get()))
+        .description("The time since the number of groups was counted.")
+        .tag("storage", storage)
+        .baseUnit("seconds")
+        .register(meterRegistry);
+  }
+
+  private static double size(Count count) {
+    return count != null ? count.size : Double.NaN;
+  }
+
+  private static double staleness(Count count) {
+    if (count == null) {
+      return Double.NaN;
+    }
+    return Duration.between(count.countedAt, Instant.now()).toMillis() / 1000.;
   }
 
-  private double groupsInDirectorySize(GroupLdapRepository groupRepository) {
-    Long size = groupRepository.count().block();
-    return size != null ? size : 0.;
+  /**
+   * Starts the periodic counting.
+   */
+  @PostConstruct
+  public void start() {
+    refresh = Flux.interval(Duration.ZERO, refreshInterval)
+        .onBackpressureDrop()
+        .concatMap(tick -> refresh(), 1)
+        .subscribe();
+  }
+
+  /**
+   * Stops the periodic counting.
+   */
+  @PreDestroy
+  public void stop() {
+    if (refresh != null) {
+      refresh.dispose();
+    }
+  }
+
+  /**
+   * Counts the groups of mongodb and of ldap. If counting fails, the last values are kept, so
+   * the staleness gauge grows.
+   *
+   * @return completes, when both sizes are counted
+   */
+  Mono<Void> refresh() {
+    return Mono.when(
+        count(groupRepository.count(), groupsInDatabase, "mongodb"),
+        count(groupLdapRepository.count(), groupsInDirectory, "ldap"));
+  }
+
+  private static Mono<Count> count(
+      Mono<Long> size,
+      AtomicReference<Count> count,
+      String storage) {
+
+    return size
+        .map(value -> new Count(value, Instant.now()))
+        .doOnNext(count::set)
+        .onErrorResume(e -> {
+          log.error("Counting groups of {} failed.", storage, e);
+          return Mono.empty();
+        });
+  }
+
+  private static class Count {
+
+    private final long size;
+
+    private final Instant countedAt;
+
+    private Count(long size, Instant countedAt) {
+      this.size = size;
+      this.countedAt = countedAt;
+    }
   }
 
-}
\ No newline at end of file
+}
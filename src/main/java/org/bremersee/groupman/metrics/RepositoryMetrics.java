@@ -0,0 +1,206 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The repository metrics. Every call of the group repository (mongodb) and of the group ldap
+ * repository implementation (the domain controller, without cache or index) is timed, its errors
+ * are counted and the number of the returned groups is recorded. The meters are tagged with the
+ * storage and the name of the repository method (operation).
+ *
+ * <p>Reactive calls are measured from the subscription until completion, error or
+ * cancellation. The meters of an operation are registered on its first call, so the hot path
+ * only looks them up by method.
+ *
+ * @author Christian Bremer
+ */
+@ConditionalOnProperty(
+    prefix = "bremersee.groupman.repository-metrics",
+    name = "enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+@Aspect
+@Component
+public class RepositoryMetrics {
+
+  private static final String MONGODB = "mongodb";
+
+  private static final String LDAP = "ldap";
+
+  private final MeterRegistry meterRegistry;
+
+  private final Map<Method, Meters> mongoMeters = new ConcurrentHashMap<>();
+
+  private final Map<Method, Meters> ldapMeters = new ConcurrentHashMap<>();
+
+  /**
+   * Instantiates new repository metrics.
+   *
+   * @param meterRegistry the meter registry
+   */
+  public RepositoryMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Measures a call of the group repository.
+   *
+   * @param call the call
+   * @return the result of the call
+   * @throws Throwable the exception of the call
+   */
+  @Around("execution(public * org.bremersee.groupman.repository.GroupRepository+.*(..))"
+      + " && !execution(* java.lang.Object.*(..))")
+  public Object measureMongo(ProceedingJoinPoint call) throws Throwable {
+    return measure(call, MONGODB, mongoMeters);
+  }
+
+  /**
+   * Measures a call of the group ldap repository implementation.
+   *
+   * @param call the call
+   * @return the result of the call
+   * @throws Throwable the exception of the call
+   */
+  @Around("execution(public * org.bremersee.groupman.repository.ldap.GroupLdapRepositoryImpl.*(..))"
+      + " && !execution(* java.lang.Object.*(..))")
+  public Object measureLdap(ProceedingJoinPoint call) throws Throwable {
+    return measure(call, LDAP, ldapMeters);
+  }
+
+  private Object measure(
+      ProceedingJoinPoint call,
+      String storage,
+      Map<Method, Meters> metersByMethod) throws Throwable {
+
+    final Method method = ((MethodSignature) call.getSignature()).getMethod();
+    final Meters meters = metersByMethod
+        .computeIfAbsent(method, m -> new Meters(meterRegistry, storage, m.getName()));
+    final long start = meterRegistry.config().clock().monotonicTime();
+    final Object result;
+    try {
+      result = call.proceed();
+    } catch (Throwable t) {
+      meters.stop(start, t);
+      throw t;
+    }
+    if (result instanceof Flux) {
+      return measure((Flux<?>) result, meters);
+    } else if (result instanceof Mono) {
+      return measure((Mono<?>) result, meters);
+    }
+    meters.stop(start, null);
+    meters.recordSize(result);
+    return result;
+  }
+
+  private <T> Flux<T> measure(Flux<T> flux, Meters meters) {
+    return Flux.defer(() -> {
+      final long start = meterRegistry.config().clock().monotonicTime();
+      final long[] size = new long[1];
+      return flux
+          .doOnNext(element -> size[0]++)
+          .doOnComplete(() -> {
+            meters.stop(start, null);
+            meters.resultSize.record(size[0]);
+          })
+          .doOnError(error -> meters.stop(start, error))
+          .doOnCancel(() -> meters.stop(start, null));
+    });
+  }
+
+  private <T> Mono<T> measure(Mono<T> mono, Meters meters) {
+    return Mono.defer(() -> {
+      final long start = meterRegistry.config().clock().monotonicTime();
+      return mono
+          .doOnSuccess(value -> {
+            meters.stop(start, null);
+            meters.recordSize(value);
+          })
+          .doOnError(error -> meters.stop(start, error))
+          .doOnCancel(() -> meters.stop(start, null));
+    });
+  }
+
+  /**
+   * The meters of one operation.
+   */
+  private static class Meters {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Tags tags;
+
+    private final Timer timer;
+
+    private final DistributionSummary resultSize;
+
+    private Meters(MeterRegistry meterRegistry, String storage, String operation) {
+      this.meterRegistry = meterRegistry;
+      this.tags = Tags.of("storage", storage, "operation", operation);
+      this.timer = Timer.builder("groups_repository")
+          .description("The time of a repository call.")
+          .tags(tags)
+          .publishPercentileHistogram()
+          .register(meterRegistry);
+      this.resultSize = DistributionSummary.builder("groups_repository_result_size")
+          .description("The number of groups, that are returned by a repository call.")
+          .tags(tags)
+          .baseUnit("groups")
+          .publishPercentileHistogram()
+          .register(meterRegistry);
+    }
+
+    private void stop(long start, Throwable error) {
+      timer.record(meterRegistry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+      if (error != null) {
+        Counter.builder("groups_repository_errors")
+            .description("The number of failed repository calls.")
+            .tags(tags)
+            .tag("exception", error.getClass().getSimpleName())
+            .register(meterRegistry)
+            .increment();
+      }
+    }
+
+    private void recordSize(Object value) {
+      if (value instanceof Collection) {
+        resultSize.record(((Collection<?>) value).size());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A write operation of a bulk write of groups.
+ *
+ * @author Christian Bremer
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class GroupBulkWrite {
+
+  /**
+   * The type of the write operation.
+   */
+  public enum Type {
+
+    /**
+     * Inserts a new group.
+     */
+    INSERT,
+
+    /**
+     * Replaces an existing group, if it has the expected version.
+     */
+    REPLACE,
+
+    /**
+     * Deletes a group.
+     */
+    DELETE
+  }
+
+  private final Type type;
+
+  private final String id;
+
+  private final GroupEntity group;
+
+  private final Long expectedVersion;
+
+  /**
+   * Creates an insert operation.
+   *
+   * @param group the new group
+   * @return the write operation
+   */
+  public static GroupBulkWrite insert(GroupEntity group) {
+    return new GroupBulkWrite(Type.INSERT, group.getId(), group, null);
+  }
+
+  /**
+   * Creates a replace operation.
+   *
+   * @param group the modified group
+   * @param expectedVersion the version of the stored group
+   * @return the write operation
+   */
+  public static GroupBulkWrite replace(GroupEntity group, Long expectedVersion) {
+    return new GroupBulkWrite(Type.REPLACE, group.getId(), group, expectedVersion);
+  }
+
+  /**
+   * Creates a delete operation.
+   *
+   * @param id the id of the group
+   * @return the write operation
+   */
+  public static GroupBulkWrite delete(String id) {
+    return new GroupBulkWrite(Type.DELETE, id, null, null);
+  }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The result of a write operation of a bulk write of groups.
+ *
+ * @author Christian Bremer
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class GroupBulkWriteResult {
+
+  /**
+   * The outcome of the write operation.
+   */
+  public enum Outcome {
+
+    /**
+     * The operation was successful.
+     */
+    SUCCESS,
+
+    /**
+     * The group was modified by someone else in the meantime.
+     */
+    CONFLICT,
+
+    /**
+     * The group was deleted in the meantime.
+     */
+    NOT_FOUND,
+
+    /**
+     * The group already exists.
+     */
+    DUPLICATE,
+
+    /**
+     * The operation failed.
+     */
+    FAILED,
+
+    /**
+     * The operation was not executed, because a previous operation of an ordered bulk write
+     * failed.
+     */
+    NOT_EXECUTED
+  }
+
+  private static final GroupBulkWriteResult SUCCESS = new GroupBulkWriteResult(
+      Outcome.SUCCESS, null);
+
+  private static final GroupBulkWriteResult CONFLICT = new GroupBulkWriteResult(
+      Outcome.CONFLICT, "The group was modified in the meantime.");
+
+  private static final GroupBulkWriteResult NOT_FOUND = new GroupBulkWriteResult(
+      Outcome.NOT_FOUND, "The group was deleted in the meantime.");
+
+  private static final GroupBulkWriteResult NOT_EXECUTED = new GroupBulkWriteResult(
+      Outcome.NOT_EXECUTED, "A previous operation failed.");
+
+  private final Outcome outcome;
+
+  private final String message;
+
+  /**
+   * Returns the result of a successful operation.
+   *
+   * @return the result
+   */
+  public static GroupBulkWriteResult success() {
+    return SUCCESS;
+  }
+
+  /**
+   * Returns the result of an operation, that did not find the expected version.
+   *
+   * @return the result
+   */
+  public static GroupBulkWriteResult conflict() {
+    return CONFLICT;
+  }
+
+  /**
+   * Returns the result of an operation, whose group was deleted in the meantime.
+   *
+   * @return the result
+   */
+  public static GroupBulkWriteResult notFound() {
+    return NOT_FOUND;
+  }
+
+  /**
+   * Returns the result of a failed operation.
+   *
+   * @param message the error message
+   * @return the result
+   */
+  public static GroupBulkWriteResult failed(String message) {
+    return new GroupBulkWriteResult(Outcome.FAILED, message);
+  }
+
+  /**
+   * Returns the result of an operation, that failed, because the group already exists.
+   *
+   * @param message the error message
+   * @return the result
+   */
+  public static GroupBulkWriteResult duplicate(String message) {
+    return new GroupBulkWriteResult(Outcome.DUPLICATE, message);
+  }
+
+  /**
+   * Returns the result of an operation, that was not executed.
+   *
+   * @return the result
+   */
+  public static GroupBulkWriteResult notExecuted() {
+    return NOT_EXECUTED;
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import java.util.Collections;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A change of a group in mongodb. It is published as application event by the controllers after
+ * a write and by the change stream listener of the groups collection.
+ *
+ * @author Christian Bremer
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class GroupChange {
+
+  /**
+   * The id of the changed group or {@code null}, if the whole collection was changed (e.g.
+   * dropped).
+   */
+  private final String groupId;
+
+  /**
+   * Specifies whether the group was deleted.
+   */
+  private final boolean deleted;
+
+  /**
+   * The users, whose membership may have been changed (the members before and after the
+   * change, as far as they are known).
+   */
+  private final Set<String> users;
+
+  /**
+   * Determines whether the membership of the given user may have been changed.
+   *
+   * @param user the name of the user
+   * @return {@code true}, if the membership may have been changed, otherwise {@code false}
+   */
+  public boolean isRelevantFor(String user) {
+    return groupId == null || (users != null && users.contains(user));
+  }
+
+  /**
+   * Creates a change of the whole collection.
+   *
+   * @return the group change
+   */
+  public static GroupChange ofAll() {
+    return new GroupChange(null, true, Collections.emptySet());
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * The group change broadcaster emits every published {@link GroupChange} to all current
+ * subscribers. Changes, that are published while there is no subscriber, are dropped.
+ *
+ * @author Christian Bremer
+ */
+@Component
+public class GroupChangeBroadcaster {
+
+  private final DirectProcessor<GroupChange> processor = DirectProcessor.create();
+
+  private final FluxSink<GroupChange> sink = processor.sink();
+
+  /**
+   * Emits the group change to all subscribers.
+   *
+   * @param groupChange the group change
+   */
+  @EventListener
+  public void onGroupChange(GroupChange groupChange) {
+    sink.next(groupChange);
+  }
+
+  /**
+   * Gets the group changes. A subscriber must request unbounded or apply a backpressure
+   * strategy, because the changes cannot be buffered for a slow subscriber.
+   *
+   * @return the group changes
+   */
+  public Flux<GroupChange> changes() {
+    return processor;
+  }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.config.GroupChangeStreamProperties;
+import org.bremersee.groupman.repository.cache.GroupCache;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ChangeStreamOptions.ChangeStreamOptionsBuilder;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import reactor.util.retry.Retry;
+
+/**
+ * The group change stream listener watches the groups collection, so that the caches notice
+ * every write, also the writes of other tools. For every changed group the group cache is
+ * invalidated and a {@link GroupChange} is published as application event.
+ *
+ * <p>The change stream does not contain the members before an update or a delete. The cached
+ * membership ids of the former members are found by the group id, so they are invalidated
+ * anyway. The published change contains the former members only, if the group was cached.
+ *
+ * <p>Every instance stores the resume token of its last processed change periodically, so that
+ * after a restart the stream is resumed, where it was left, and only the missed changes are
+ * processed. If there is no resume token or the missed changes are not available any more, the
+ * whole group cache is invalidated once.
+ *
+ * <p>If the collection is dropped or renamed, mongodb closes the stream with an invalidate event.
+ * The stream is opened again after the retry interval, it starts after the invalidate event,
+ * because it cannot be resumed there.
+ *
+ * @author Christian Bremer
+ */
+@ConditionalOnProperty(
+    prefix = "bremersee.groupman.change-stream",
+    name = "enabled",
+    havingValue = "true")
+@Component
+@Slf4j
+public class GroupChangeStreamListener {
+
+  /**
+   * Error codes of mongodb, that mean the stream cannot be resumed with the token:
+   * InvalidResumeToken, ChangeStreamFatalError and ChangeStreamHistoryLost.
+   */
+  private static final Set<Integer> LOST_RESUME_TOKEN_CODES = Set.of(260, 280, 286);
+
+  private static final String TOKEN = "token";
+
+  private static final String MODIFIED_AT = "modifiedAt";
+
+  private static final String START_AFTER = "startAfter";
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  private final GroupCache groupCache;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final GroupChangeStreamProperties properties;
+
+  private final String collectionName;
+
+  private final String resumeTokenId;
+
+  /**
+   * The last resume token and whether the stream must start after it (an invalidate event)
+   * instead of resuming after it.
+   */
+  private final AtomicReference<Tuple2<BsonValue, Boolean>> resumeToken
+      = new AtomicReference<>();
+
+  private Disposable subscription;
+
+  /**
+   * Instantiates a new group change stream listener.
+   *
+   * @param mongoTemplate the mongo template
+   * @param groupCache the group cache
+   * @param eventPublisher the event publisher
+   * @param properties the properties
+   */
+  public GroupChangeStreamListener(
+      ReactiveMongoTemplate mongoTemplate,
+      GroupCache groupCache,
+      ApplicationEventPublisher eventPublisher,
+      GroupChangeStreamProperties properties) {
+    this.mongoTemplate = mongoTemplate;
+    this.groupCache = groupCache;
+    this.eventPublisher = eventPublisher;
+    this.properties = properties;
+    this.collectionName = mongoTemplate.getCollectionName(GroupEntity.class);
+    this.resumeTokenId = properties.getResumeTokenId() + ":" + instanceId(properties);
+  }
+
+  private static String instanceId(GroupChangeStreamProperties properties) {
+    if (StringUtils.hasText(properties.getInstanceId())) {
+      return properties.getInstanceId();
+    }
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      final String instanceId = UUID.randomUUID().toString();
+      log.warn("Host name is unknown, using random instance id {}.", instanceId, e);
+      return instanceId;
+    }
+  }
+
+  /**
+   * Gets the id of the resume token of this instance.
+   *
+   * @return the resume token id
+   */
+  String getResumeTokenId() {
+    return resumeTokenId;
+  }
+
+  /**
+   * Opens the change stream. It is opened again after an error or after it was closed by
+   * mongodb.
+   */
+  @PostConstruct
+  public void start() {
+    log.info("Watching changes of collection {} with {} (resume token id = {})",
+        collectionName, properties, resumeTokenId);
+    subscription = ensureResumeTokenIndex()
+        .thenMany(Flux.defer(this::watch)
+            .doOnComplete(() -> log.info("Change stream of collection {} was closed, "
+                + "opening it again.", collectionName))
+            .repeatWhen(completions -> completions.delayElements(properties.getRetryInterval()))
+            .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.getRetryInterval())
+                .maxBackoff(Duration.ofMinutes(1L))
+                .doBeforeRetry(signal -> log.error("Watching changes of collection {} failed.",
+                    collectionName, signal.failure()))))
+        .subscribe();
+  }
+
+  /**
+   * Closes the change stream and stores the last resume token.
+   */
+  @PreDestroy
+  public void stop() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+    final Tuple2<BsonValue, Boolean> token = resumeToken.get();
+    if (token != null) {
+      saveResumeToken(token)
+          .onErrorResume(e -> Mono.empty())
+          .block(Duration.ofSeconds(5L));
+    }
+  }
+
+  private Flux<Tuple2<BsonValue, Boolean>> watch() {
+    final Tuple2<BsonValue, Boolean> token = resumeToken.get();
+    final Mono<Tuple2<BsonValue, Boolean>> startToken = token != null
+        ? Mono.just(token)
+        : loadResumeToken()
+            .switchIfEmpty(Mono.defer(() -> {
+              log.info("There is no resume token of collection {}, "
+                  + "invalidating the whole group cache.", collectionName);
+              return groupCache.invalidateAll()
+                  .then(Mono.<Tuple2<BsonValue, Boolean>>empty());
+            }));
+    return startToken
+        .map(value -> value.getT2()
+            ? ChangeStreamOptions.builder().startAfter(value.getT1())
+            : ChangeStreamOptions.builder().resumeAfter(value.getT1()))
+        .defaultIfEmpty(ChangeStreamOptions.builder())
+        .flatMapMany(this::watchChanges)
+        .onErrorResume(this::isResumeTokenLost, e -> {
+          log.warn("Changes of collection {} cannot be resumed, starting over.", collectionName);
+          resumeToken.set(null);
+          return deleteResumeToken().then(Mono.<Tuple2<BsonValue, Boolean>>error(e));
+        });
+  }
+
+  private Flux<Tuple2<BsonValue, Boolean>> watchChanges(ChangeStreamOptionsBuilder options) {
+    return mongoTemplate
+        .changeStream(collectionName, options.returnFullDocumentOnUpdate().build(), Document.class)
+        .concatMap(event -> onChange(event).thenReturn(Tuples.of(
+            event.getResumeToken(),
+            event.getOperationType() == OperationType.INVALIDATE)))
+        .doOnNext(resumeToken::set)
+        .sample(properties.getResumeTokenSaveInterval())
+        .concatMap(value -> saveResumeToken(value).thenReturn(value));
+  }
+
+  /**
+   * Invalidates the cache entries of the changed group and publishes the change.
+   *
+   * @param event the change event
+   * @return completes, when the change is processed
+   */
+  Mono<Void> onChange(ChangeStreamEvent<Document> event) {
+    final ChangeStreamDocument<Document> raw = event.getRaw();
+    final OperationType operationType = event.getOperationType();
+    final String groupId = raw != null ? groupId(raw.getDocumentKey()) : null;
+    if (groupId == null) {
+      log.info("Collection {} was changed ({}), invalidating the whole group cache.",
+          collectionName, operationType);
+      return groupCache.invalidateAll()
+          .doOnSuccess(v -> eventPublisher.publishEvent(GroupChange.ofAll()));
+    }
+    final Set<String> users = new HashSet<>(members(event.getBody()));
+    return groupCache.getCachedGroup(groupId)
+        .doOnNext(groupEntity -> users.addAll(members(groupEntity.getMembers())))
+        .then(Mono.defer(() -> groupCache.invalidate(Collections.singleton(groupId), users)))
+        .doOnSuccess(v -> eventPublisher.publishEvent(
+            new GroupChange(groupId, operationType == OperationType.DELETE, users)));
+  }
+
+  private static String groupId(BsonDocument documentKey) {
+    final BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+    if (id == null) {
+      return null;
+    } else if (id.isObjectId()) {
+      return id.asObjectId().getValue().toHexString();
+    } else if (id.isString()) {
+      return id.asString().getValue();
+    }
+    return id.toString();
+  }
+
+  private static Collection<String> members(Document document) {
+    return document != null ? members(document.get("members")) : Collections.emptySet();
+  }
+
+  private static Collection<String> members(Object members) {
+    final Set<String> names = new HashSet<>();
+    if (members instanceof Collection) {
+      for (Object member : (Collection<?>) members) {
+        if (member != null) {
+          names.add(member.toString());
+        }
+      }
+    }
+    return names;
+  }
+
+  private boolean isResumeTokenLost(Throwable error) {
+    for (Throwable t = error; t != null; t = t.getCause()) {
+      if (t instanceof MongoException
+          && LOST_RESUME_TOKEN_CODES.contains(((MongoException) t).getCode())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Mono<Void> ensureResumeTokenIndex() {
+    return mongoTemplate
+        .indexOps(properties.getResumeTokenCollection())
+        .ensureIndex(new Index()
+            .on(MODIFIED_AT, Direction.ASC)
+            .expire(properties.getResumeTokenTimeToLive()))
+        .doOnError(e -> log.error("Creating index of collection {} failed.",
+            properties.getResumeTokenCollection(), e))
+        .onErrorResume(e -> Mono.empty())
+        .then();
+  }
+
+  private Query resumeTokenQuery() {
+    return Query.query(Criteria.where("_id").is(resumeTokenId));
+  }
+
+  private Mono<Tuple2<BsonValue, Boolean>> loadResumeToken() {
+    return mongoTemplate
+        .findOne(resumeTokenQuery(), Document.class, properties.getResumeTokenCollection())
+        .filter(document -> document.getString(TOKEN) != null)
+        .<Tuple2<BsonValue, Boolean>>map(document -> Tuples.of(
+            BsonDocument.parse(document.getString(TOKEN)),
+            document.getBoolean(START_AFTER, false)));
+  }
+
+  private Mono<Void> saveResumeToken(Tuple2<BsonValue, Boolean> token) {
+    if (!token.getT1().isDocument()) {
+      return Mono.empty();
+    }
+    return mongoTemplate
+        .upsert(
+            resumeTokenQuery(),
+            Update.update(TOKEN, token.getT1().asDocument().toJson())
+                .set(START_AFTER, token.getT2())
+                .set(MODIFIED_AT, new Date()),
+            properties.getResumeTokenCollection())
+        .then();
+  }
+
+  private Mono<Void> deleteResumeToken() {
+    return mongoTemplate
+        .remove(resumeTokenQuery(), properties.getResumeTokenCollection())
+        .then();
+  }
+
+}
@@ -47,7 +47,9 @@ import org.springframework.validation.annotation.Validated;
 @CompoundIndexes({
     @CompoundIndex(name = "creator_group",
         def = "{'createdBy': 1, 'name': 1}",
-        unique = true)
+        unique = true),
+    @CompoundIndex(name = "group_creator",
+        def = "{'name': 1, 'createdBy': 1}")
 })
 @Getter
 @Setter
@@ -101,7 +103,7 @@ public class GroupEntity implements Comparable<GroupEntity> {
    * @param members the members
    * @param owners the owners
    */
-  @Builder
+  @Builder(toBuilder = true)
   public GroupEntity(
       String id,
       Long version,
@@ -125,6 +127,18 @@ public class GroupEntity implements Comparable<GroupEntity> {
     this.owners = owners;
   }
 
+  /**
+   * Creates a copy of this group entity with its own sets of members and owners.
+   *
+   * @return the copy
+   */
+  public GroupEntity copy() {
+    return toBuilder()
+        .members(members != null ? new LinkedHashSet<>(members) : new LinkedHashSet<>())
+        .owners(owners != null ? new LinkedHashSet<>(owners) : new LinkedHashSet<>())
+        .build();
+  }
+
   @Override
   public int compareTo(@NonNull GroupEntity o) {
     String s1 = getName() == null ? "" : getName();
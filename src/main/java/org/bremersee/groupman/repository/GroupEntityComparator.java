@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The default order of groups: by name, by creator, by source and finally by id, all case
+ * sensitive and with {@code null} values first. Source and id only break the ties of groups with
+ * the same name and creator, so that every group has a unique position. Name and creator are
+ * unique within mongodb, so this is the order in which mongodb returns the groups, if they are
+ * queried with {@link #SORT}, and sorted results of mongodb and ldap can be merged without being
+ * sorted again.
+ *
+ * @author Christian Bremer
+ */
+public final class GroupEntityComparator implements Comparator<GroupEntity> {
+
+  /**
+   * The sort order of the mongodb queries.
+   */
+  public static final Sort SORT = Sort.by("name", "createdBy");
+
+  /**
+   * The comparator instance.
+   */
+  public static final GroupEntityComparator INSTANCE = new GroupEntityComparator();
+
+  private GroupEntityComparator() {
+  }
+
+  @Override
+  public int compare(GroupEntity o1, GroupEntity o2) {
+    int c = compare(o1.getName(), o2.getName());
+    if (c != 0) {
+      return c;
+    }
+    c = compare(o1.getCreatedBy(), o2.getCreatedBy());
+    if (c != 0) {
+      return c;
+    }
+    // mongodb stores the name of the source
+    c = compare(
+        o1.getSource() != null ? o1.getSource().name() : null,
+        o2.getSource() != null ? o2.getSource().name() : null);
+    if (c != 0) {
+      return c;
+    }
+    return compare(o1.getId(), o2.getId());
+  }
+
+  /**
+   * Returns the groups of the sorted list, that come after the given group. The position of the
+   * group is searched binary, so the groups before it are not looked at.
+   *
+   * @param sortedGroups the groups, sorted by this comparator
+   * @param after the group (may be {@code null})
+   * @return the groups after the given group or all groups, if the given group is {@code null}
+   */
+  public static List<GroupEntity> tailAfter(List<GroupEntity> sortedGroups, GroupEntity after) {
+    if (after == null) {
+      return sortedGroups;
+    }
+    final int index = Collections.binarySearch(sortedGroups, after, INSTANCE);
+    final int fromIndex = index >= 0 ? index + 1 : -index - 1;
+    return sortedGroups.subList(fromIndex, sortedGroups.size());
+  }
+
+  private static int compare(String s1, String s2) {
+    if (s1 == null) {
+      return s2 == null ? 0 : -1;
+    }
+    if (s2 == null) {
+      return 1;
+    }
+    return s1.compareTo(s2);
+  }
+
+}
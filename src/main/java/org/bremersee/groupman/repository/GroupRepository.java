@@ -34,11 +34,13 @@ public interface GroupRepository
    *
    * @param owner the owner
    * @param member the member
+   * @param sort the sort order
    * @return the groups
    */
   Flux<GroupEntity> findByOwnersIsContainingOrMembersIsContaining(
       String owner,
-      String member);
+      String member,
+      Sort sort);
 
   /**
    * Find groups by owner.
@@ -53,16 +55,18 @@ public interface GroupRepository
    * Find groups by member.
    *
    * @param member the member
+   * @param sort the sort order
    * @return the groups
    */
-  Flux<GroupEntity> findByMembersIsContaining(String member);
+  Flux<GroupEntity> findByMembersIsContaining(String member, Sort sort);
 
   /**
    * Find groups with the specified IDs.
    *
    * @param ids the ids
+   * @param sort the sort order
    * @return the groups
    */
-  Flux<GroupEntity> findByIdIn(List<String> ids);
+  Flux<GroupEntity> findByIdIn(List<String> ids, Sort sort);
 
 }
@@ -16,6 +16,10 @@
 
 package org.bremersee.groupman.repository;
 
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.mongodb.core.query.Criteria;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -41,4 +45,86 @@ public interface GroupRepositoryCustom {
    */
   Mono<Long> countMembership(String userName);
 
+  /**
+   * Counts the owned groups and the membership of a user with one aggregation.
+   *
+   * @param userName the user name
+   * @return the sizes of owned groups and of membership
+   */
+  Mono<GroupCount> countOwnedGroupsAndMembership(String userName);
+
+  /**
+   * Finds the ids of the groups with the given member. Only the ids are read from the database.
+   *
+   * @param userName the user name
+   * @return the group ids
+   */
+  Flux<String> findIdsByMembersIsContaining(String userName);
+
+  /**
+   * Finds the next page of groups, that are sorted by {@link GroupEntityComparator#SORT}. The
+   * page starts after the given group (keyset pagination), so the costs of a page do not depend
+   * on its position.
+   *
+   * @param criteria the criteria of the groups (may be {@code null})
+   * @param after the last group of the previous page, only name and creator are used (may be
+   *     {@code null})
+   * @param limit the maximum number of groups
+   * @return the groups
+   */
+  Flux<GroupEntity> findPage(Criteria criteria, GroupEntity after, int limit);
+
+  /**
+   * Adds members to a group with one atomic update.
+   *
+   * @param groupId the group id
+   * @param members the members to add
+   * @param owner if present, the group is only modified, if it is owned by this user
+   * @return the modified group or empty, if no group was modified
+   */
+  Mono<GroupEntity> addMembers(String groupId, Collection<String> members, String owner);
+
+  /**
+   * Removes members from a group with one atomic update.
+   *
+   * @param groupId the group id
+   * @param members the members to remove
+   * @param owner if present, the group is only modified, if it is owned by this user
+   * @return the modified group or empty, if no group was modified
+   */
+  Mono<GroupEntity> removeMembers(String groupId, Collection<String> members, String owner);
+
+  /**
+   * Adds owners to a group with one atomic update.
+   *
+   * @param groupId the group id
+   * @param owners the owners to add
+   * @param owner if present, the group is only modified, if it is owned by this user
+   * @return the modified group or empty, if no group was modified
+   */
+  Mono<GroupEntity> addOwners(String groupId, Collection<String> owners, String owner);
+
+  /**
+   * Removes owners from a group with one atomic update. The group is not modified, if no owner
+   * would be left.
+   *
+   * @param groupId the group id
+   * @param owners the owners to remove
+   * @param owner if present, the group is only modified, if it is owned by this user
+   * @return the modified group or empty, if no group was modified
+   */
+  Mono<GroupEntity> removeOwners(String groupId, Collection<String> owners, String owner);
+
+  /**
+   * Executes the write operations with one bulk write. Replace operations only modify a group,
+   * if it has the expected version; the version of the replaced group must already be
+   * incremented.
+   *
+   * @param writes the write operations
+   * @param ordered if {@code true}, the operations are executed one after the other and the
+   *     execution stops at the first failure; otherwise all operations are executed in any order
+   * @return the results in the order of the write operations
+   */
+  Mono<List<GroupBulkWriteResult>> bulkWrite(List<GroupBulkWrite> writes, boolean ordered);
+
 }
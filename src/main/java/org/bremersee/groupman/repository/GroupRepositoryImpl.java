@@ -16,10 +16,35 @@
 
 package org.bremersee.groupman.repository;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.repository.GroupBulkWrite.Type;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -31,6 +56,12 @@ import reactor.core.publisher.Mono;
 @SuppressWarnings("unused")
 public class GroupRepositoryImpl implements GroupRepositoryCustom {
 
+  /**
+   * The field of a replaced group, that contains the id of the bulk write operation, which has
+   * replaced it. It is used to find out, whether a replacement has matched.
+   */
+  static final String WRITE_ID = "_writeId";
+
   private final ReactiveMongoTemplate mongoTemplate;
 
   /**
@@ -54,4 +85,275 @@ public class GroupRepositoryImpl implements GroupRepositoryCustom {
         .count(Query.query(Criteria.where("members").is(userName)), GroupEntity.class);
   }
 
+  @Override
+  public Mono<GroupCount> countOwnedGroupsAndMembership(String userName) {
+    final Aggregation aggregation = Aggregation.newAggregation(
+        Aggregation.match(new Criteria().orOperator(
+            Criteria.where("owners").is(userName),
+            Criteria.where("members").is(userName))),
+        Aggregation
+            .facet(
+                Aggregation.match(Criteria.where("owners").is(userName)),
+                Aggregation.count().as("size"))
+            .as("owned")
+            .and(
+                Aggregation.match(Criteria.where("members").is(userName)),
+                Aggregation.count().as("size"))
+            .as("membership"));
+    return mongoTemplate.aggregate(aggregation, GroupEntity.class, Document.class)
+        .next()
+        .map(result -> new GroupCount(size(result, "owned"), size(result, "membership")))
+        .defaultIfEmpty(new GroupCount(0L, 0L));
+  }
+
+  private static long size(Document result, String facet) {
+    final List<?> counts = result.get(facet, List.class);
+    if (counts == null || counts.isEmpty() || !(counts.get(0) instanceof Document)) {
+      return 0L;
+    }
+    final Number size = ((Document) counts.get(0)).get("size", Number.class);
+    return size != null ? size.longValue() : 0L;
+  }
+
+  @Override
+  public Flux<String> findIdsByMembersIsContaining(String userName) {
+    final Query query = Query.query(Criteria.where("members").is(userName));
+    query.fields().include("id");
+    return mongoTemplate.find(query, GroupEntity.class).map(GroupEntity::getId);
+  }
+
+  @Override
+  public Flux<GroupEntity> findPage(Criteria criteria, GroupEntity after, int limit) {
+    final List<Criteria> criteriaList = new ArrayList<>();
+    if (criteria != null) {
+      criteriaList.add(criteria);
+    }
+    if (after != null) {
+      criteriaList.add(after(after));
+    }
+    final Query query = criteriaList.isEmpty()
+        ? new Query()
+        : Query.query(new Criteria().andOperator(criteriaList.toArray(new Criteria[0])));
+    return mongoTemplate.find(
+        query.with(GroupEntityComparator.SORT).limit(limit),
+        GroupEntity.class);
+  }
+
+  /**
+   * Creates the criteria of the groups after the given one in the order of
+   * {@link GroupEntityComparator}: a group is after the given one, if it has the same values of
+   * the first sort keys and a greater value of the next one.
+   */
+  private static Criteria after(GroupEntity after) {
+    final String[] keys = {"name", "createdBy", "source", "id"};
+    final Object[] values = {
+        after.getName(), after.getCreatedBy(), after.getSource(), after.getId()};
+    final Criteria[] alternatives = new Criteria[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      final Criteria[] criteria = new Criteria[i + 1];
+      for (int j = 0; j < i; j++) {
+        criteria[j] = Criteria.where(keys[j]).is(values[j]);
+      }
+      // null values come first, so every value is greater than null
+      criteria[i] = values[i] != null
+          ? Criteria.where(keys[i]).gt(values[i])
+          : Criteria.where(keys[i]).ne(null);
+      alternatives[i] = i == 0 ? criteria[0] : new Criteria().andOperator(criteria);
+    }
+    return new Criteria().orOperator(alternatives);
+  }
+
+  @Override
+  public Mono<GroupEntity> addMembers(String groupId, Collection<String> members, String owner) {
+    return modify(
+        groupId,
+        owner,
+        null,
+        new Update().addToSet("members").each(toArray(members)));
+  }
+
+  @Override
+  public Mono<GroupEntity> removeMembers(String groupId, Collection<String> members, String owner) {
+    return modify(
+        groupId,
+        owner,
+        null,
+        new Update().pullAll("members", toArray(members)));
+  }
+
+  @Override
+  public Mono<GroupEntity> addOwners(String groupId, Collection<String> owners, String owner) {
+    return modify(
+        groupId,
+        owner,
+        null,
+        new Update().addToSet("owners").each(toArray(owners)));
+  }
+
+  @Override
+  public Mono<GroupEntity> removeOwners(String groupId, Collection<String> owners, String owner) {
+    final Object[] values = toArray(owners);
+    return modify(
+        groupId,
+        owner,
+        // at least one owner must be left
+        Criteria.where("owners").elemMatch(new Criteria().nin(values)),
+        new Update().pullAll("owners", values));
+  }
+
+  private Mono<GroupEntity> modify(
+      String groupId,
+      String owner,
+      Criteria condition,
+      Update update) {
+
+    final List<Criteria> criteria = new ArrayList<>();
+    criteria.add(Criteria.where("id").is(groupId));
+    if (owner != null) {
+      criteria.add(Criteria.where("owners").is(owner));
+    }
+    if (condition != null) {
+      criteria.add(condition);
+    }
+    final Query query = Query.query(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
+    return mongoTemplate.findAndModify(
+        query,
+        update.set("modifiedAt", new Date()).inc("version", 1),
+        FindAndModifyOptions.options().returnNew(true),
+        GroupEntity.class);
+  }
+
+  @Override
+  public Mono<List<GroupBulkWriteResult>> bulkWrite(List<GroupBulkWrite> writes, boolean ordered) {
+    if (writes == null || writes.isEmpty()) {
+      return Mono.just(Collections.emptyList());
+    }
+    final List<String> writeIds = new ArrayList<>(writes.size());
+    final List<WriteModel<Document>> models = new ArrayList<>(writes.size());
+    for (GroupBulkWrite write : writes) {
+      final String writeId = new ObjectId().toHexString();
+      writeIds.add(writeId);
+      models.add(toWriteModel(write, writeId));
+    }
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(GroupEntity.class))
+        .flatMap(collection -> Mono.from(collection
+            .bulkWrite(models, new BulkWriteOptions().ordered(ordered))))
+        .map(result -> toResults(writes, result, Collections.emptyList(), ordered))
+        .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(
+            toResults(writes, e.getWriteResult(), e.getWriteErrors(), ordered)))
+        .flatMap(results -> findConflicts(writes, writeIds, results));
+  }
+
+  private WriteModel<Document> toWriteModel(GroupBulkWrite write, String writeId) {
+    if (write.getType() == Type.DELETE) {
+      return new DeleteOneModel<>(idFilter(write.getId()));
+    }
+    final Document document = new Document();
+    mongoTemplate.getConverter().write(write.getGroup(), document);
+    if (write.getType() == Type.INSERT) {
+      return new InsertOneModel<>(document);
+    }
+    document.put(WRITE_ID, writeId);
+    return new ReplaceOneModel<>(
+        Filters.and(idFilter(write.getId()), Filters.eq("version", write.getExpectedVersion())),
+        document);
+  }
+
+  private Bson idFilter(String id) {
+    return Filters.eq("_id", mongoTemplate.getConverter().convertId(id, Object.class));
+  }
+
+  private static List<GroupBulkWriteResult> toResults(
+      List<GroupBulkWrite> writes,
+      BulkWriteResult result,
+      List<BulkWriteError> errors,
+      boolean ordered) {
+
+    final GroupBulkWriteResult[] results = new GroupBulkWriteResult[writes.size()];
+    int firstError = writes.size();
+    for (BulkWriteError error : errors) {
+      results[error.getIndex()] = error.getCategory() == ErrorCategory.DUPLICATE_KEY
+          ? GroupBulkWriteResult.duplicate(error.getMessage())
+          : GroupBulkWriteResult.failed(error.getMessage());
+      firstError = Math.min(firstError, error.getIndex());
+    }
+    final long replaces = writes.stream().filter(write -> write.getType() == Type.REPLACE).count();
+    final boolean allReplaced = errors.isEmpty()
+        && result.wasAcknowledged()
+        && result.getMatchedCount() == replaces;
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] != null) {
+        continue;
+      }
+      if (ordered && i > firstError) {
+        results[i] = GroupBulkWriteResult.notExecuted();
+      } else if (writes.get(i).getType() == Type.REPLACE && !allReplaced) {
+        // it is not known yet, whether this replacement has matched
+        results[i] = null;
+      } else {
+        results[i] = GroupBulkWriteResult.success();
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * The bulk write result only counts the matched replacements. If not all replacements have
+   * matched, the write ids of the groups are read: a replacement has matched, if the group
+   * contains its write id. Otherwise the group was modified by someone else (or by another
+   * operation of the same bulk write) or it was deleted in the meantime.
+   */
+  private Mono<List<GroupBulkWriteResult>> findConflicts(
+      List<GroupBulkWrite> writes,
+      List<String> writeIds,
+      List<GroupBulkWriteResult> results) {
+
+    final List<Object> ids = new ArrayList<>();
+    for (int i = 0; i < results.size(); i++) {
+      if (results.get(i) == null) {
+        ids.add(mongoTemplate.getConverter().convertId(writes.get(i).getId(), Object.class));
+      }
+    }
+    if (ids.isEmpty()) {
+      return Mono.just(results);
+    }
+    final Query query = Query.query(Criteria.where("_id").in(ids));
+    query.fields().include("_id").include(WRITE_ID);
+    return mongoTemplate
+        .find(query, Document.class, mongoTemplate.getCollectionName(GroupEntity.class))
+        .collectMap(
+            document -> String.valueOf(document.get("_id")),
+            document -> String.valueOf(document.get(WRITE_ID)))
+        .map(storedWriteIds -> resolveConflicts(writes, writeIds, results, storedWriteIds));
+  }
+
+  private static List<GroupBulkWriteResult> resolveConflicts(
+      List<GroupBulkWrite> writes,
+      List<String> writeIds,
+      List<GroupBulkWriteResult> results,
+      Map<String, String> storedWriteIds) {
+
+    final List<GroupBulkWriteResult> resolved = new ArrayList<>(results.size());
+    for (int i = 0; i < results.size(); i++) {
+      final GroupBulkWriteResult result = results.get(i);
+      if (result != null) {
+        resolved.add(result);
+      } else {
+        final String storedWriteId = storedWriteIds.get(writes.get(i).getId());
+        if (storedWriteId == null) {
+          resolved.add(GroupBulkWriteResult.notFound());
+        } else if (storedWriteId.equals(writeIds.get(i))) {
+          resolved.add(GroupBulkWriteResult.success());
+        } else {
+          resolved.add(GroupBulkWriteResult.conflict());
+        }
+      }
+    }
+    return resolved;
+  }
+
+  private static Object[] toArray(Collection<String> values) {
+    return values != null ? values.toArray() : new Object[0];
+  }
+
 }
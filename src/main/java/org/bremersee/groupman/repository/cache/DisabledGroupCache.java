@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * The disabled group cache always calls the source.
+ *
+ * @author Christian Bremer
+ */
+@ConditionalOnProperty(
+    prefix = "bremersee.groupman.redis-cache",
+    name = "enabled",
+    havingValue = "false",
+    matchIfMissing = true)
+@Component
+public class DisabledGroupCache implements GroupCache {
+
+  @Override
+  public Mono<GroupEntity> getGroup(String id, Mono<GroupEntity> source) {
+    return source;
+  }
+
+  @Override
+  public Mono<GroupEntity> getCachedGroup(String id) {
+    return Mono.empty();
+  }
+
+  @Override
+  public Mono<Set<String>> getMembershipIds(
+      String user,
+      boolean ldap,
+      Mono<Tuple2<Set<String>, Boolean>> source) {
+    return source.map(Tuple2::getT1);
+  }
+
+  @Override
+  public Mono<Void> invalidate(Collection<String> groupIds, Collection<String> users) {
+    return Mono.empty();
+  }
+
+  @Override
+  public Mono<Void> invalidateAll() {
+    return Mono.empty();
+  }
+
+}
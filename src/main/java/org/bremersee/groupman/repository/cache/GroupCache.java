@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.cache;
+
+import java.util.Collection;
+import java.util.Set;
+import org.bremersee.groupman.repository.GroupEntity;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * The group cache, that is shared by all instances of the service. It caches the groups of
+ * mongodb by id and the membership ids by user. The controllers invalidate the entries, whenever
+ * they write a group.
+ *
+ * @author Christian Bremer
+ */
+public interface GroupCache {
+
+  /**
+   * Gets the group with the given id from the cache or from the source, if it is not cached.
+   *
+   * @param id the id of the group
+   * @param source the source of the group, that is called on a cache miss
+   * @return the group; the caller may modify it
+   */
+  Mono<GroupEntity> getGroup(String id, Mono<GroupEntity> source);
+
+  /**
+   * Gets the group with the given id, if it is cached.
+   *
+   * @param id the id of the group
+   * @return the cached group; the caller may modify it
+   */
+  Mono<GroupEntity> getCachedGroup(String id);
+
+  /**
+   * Gets the membership ids of the given user from the cache or from the source, if they are not
+   * cached.
+   *
+   * @param user the name of the user
+   * @param ldap specifies whether the ids contain the ldap groups or not
+   * @param source the source of the membership ids, that is called on a cache miss; it emits
+   *     the ids and whether they are complete, incomplete ids are returned but not cached
+   * @return the membership ids
+   */
+  Mono<Set<String>> getMembershipIds(
+      String user,
+      boolean ldap,
+      Mono<Tuple2<Set<String>, Boolean>> source);
+
+  /**
+   * Removes the given groups, the membership ids, that contain one of the groups, and the
+   * membership ids of the given users from the cache.
+   *
+   * @param groupIds the ids of the written groups
+   * @param users the users, whose membership may have been changed
+   * @return completes, when the entries are removed
+   */
+  Mono<Void> invalidate(Collection<String> groupIds, Collection<String> users);
+
+  /**
+   * Removes all entries from the cache.
+   *
+   * @return completes, when the entries are removed
+   */
+  Mono<Void> invalidateAll();
+
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.config.RedisGroupCacheProperties;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.ReactiveSubscription.Message;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.ReactiveRedisMessageListenerContainer;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.retry.Retry;
+
+/**
+ * The group cache in redis. The groups and the membership ids are stored as json in redis, so
+ * that all instances of the service share them. A small local cache in front of redis saves the
+ * round trip for frequently used entries.
+ *
+ * <p>An invalidation deletes the keys in redis and publishes them on the invalidation channel.
+ * Every instance subscribes to this channel and removes the keys from its local cache, so a
+ * write is visible on all instances as soon as the message arrives. If the subscription is
+ * lost, the local cache is cleared on resubscription. Invalidating all entries deletes all keys
+ * with the key prefix. If redis is not available, the source is
+ * called and the error is logged.
+ *
+ * <p>Every key has a generation, that is incremented by its invalidation, and all keys share a
+ * global generation, that is incremented by the invalidation of all entries. The generations are
+ * read before the source is called, and the value of the source is only written, if they are
+ * still the same; so a value, that was loaded before a concurrent write, does not overwrite the
+ * invalidation of this write. Membership ids, that are incomplete, because a source timed out,
+ * are not written at all.
+ *
+ * <p>The keys of the membership ids are indexed by the ids of their groups. The invalidation of
+ * a group invalidates all membership ids, that contain it, so the former members of a group need
+ * not be known.
+ *
+ * <p>The scripts, that write and invalidate the entries, access generation keys and indexed keys,
+ * that are not passed to them. This is supported by a single redis node or redis sentinel; a
+ * redis cluster is only supported, if the key prefix contains a hash tag (e.g.
+ * {@code {groupman}:}), so that all keys are in one hash slot.
+ *
+ * @author Christian Bremer
+ */
+@Slf4j
+public class RedisGroupCache implements GroupCache {
+
+  private static final String GROUP_KEY = "group:";
+
+  private static final String MEMBERSHIP_KEY = "membership:";
+
+  private static final String LDAP_SUFFIX = ":ldap";
+
+  private static final String MEMBERSHIP_INDEX_KEY = "membership-index:";
+
+  private static final String GENERATION_KEY = "generation:";
+
+  private static final String GLOBAL_GENERATION_KEY = "generation";
+
+  private static final String ALL_KEYS = "*";
+
+  private static final String NO_GENERATION = "";
+
+  /**
+   * Writes the value (ARGV[2]) with the time to live in milliseconds (ARGV[3]) to the key
+   * (KEYS[1]), if the global generation (KEYS[2]) and the generation of the key (KEYS[3]) are
+   * the expected generation (ARGV[1]). The key is added to the membership indexes of the groups
+   * (the rest of KEYS).
+   */
+  private static final RedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>(
+      "local generation = (redis.call('get', KEYS[2]) or '0') "
+          + ".. ':' .. (redis.call('get', KEYS[3]) or '0') "
+          + "if generation ~= ARGV[1] then return 0 end "
+          + "redis.call('set', KEYS[1], ARGV[2], 'PX', ARGV[3]) "
+          + "for i = 4, #KEYS do "
+          + "redis.call('sadd', KEYS[i], KEYS[1]) "
+          + "redis.call('pexpire', KEYS[i], ARGV[3]) "
+          + "end "
+          + "return 1",
+      Long.class);
+
+  /**
+   * Increments the generations of the first ARGV[2] keys (the next ARGV[2] entries of KEYS) and
+   * deletes them. Then all keys of the membership indexes (the rest of KEYS) are invalidated the
+   * same way, the generation key is the generation key prefix (ARGV[3]) and the key without the
+   * key prefix, that is ARGV[4] bytes long. The generations expire after the time to live in
+   * milliseconds (ARGV[1]). The keys of the membership indexes are returned as json array.
+   */
+  private static final RedisScript<String> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+      "local n = tonumber(ARGV[2]) "
+          + "local keys = {} "
+          + "for i = 1, n do "
+          + "redis.call('incr', KEYS[n + i]) "
+          + "redis.call('pexpire', KEYS[n + i], ARGV[1]) "
+          + "redis.call('del', KEYS[i]) "
+          + "end "
+          + "for i = 2 * n + 1, #KEYS do "
+          + "for _, key in ipairs(redis.call('smembers', KEYS[i])) do "
+          + "local generationKey = ARGV[3] .. string.sub(key, tonumber(ARGV[4]) + 1) "
+          + "redis.call('incr', generationKey) "
+          + "redis.call('pexpire', generationKey, ARGV[1]) "
+          + "redis.call('del', key) "
+          + "table.insert(keys, key) "
+          + "end "
+          + "redis.call('del', KEYS[i]) "
+          + "end "
+          + "if #keys == 0 then return '[]' end "
+          + "return cjson.encode(keys)",
+      String.class);
+
+  private static final int DELETE_BATCH_SIZE = 1000;
+
+  private final ReactiveStringRedisTemplate redisTemplate;
+
+  private final ReactiveRedisMessageListenerContainer listenerContainer;
+
+  private final ObjectMapper objectMapper;
+
+  private final String keyPrefix;
+
+  private final String channel;
+
+  private final Duration timeToLive;
+
+  private final Cache<String, Object> localCache;
+
+  private final Counter localHits;
+
+  private final Counter redisHits;
+
+  private final Counter misses;
+
+  private Disposable subscription;
+
+  /**
+   * Instantiates a new redis group cache.
+   *
+   * @param redisTemplate the redis template
+   * @param connectionFactory the redis connection factory
+   * @param objectMapper the object mapper
+   * @param properties the properties
+   * @param meterRegistry the meter registry
+   */
+  public RedisGroupCache(
+      ReactiveStringRedisTemplate redisTemplate,
+      ReactiveRedisConnectionFactory connectionFactory,
+      ObjectMapper objectMapper,
+      RedisGroupCacheProperties properties,
+      MeterRegistry meterRegistry) {
+
+    Assert.notNull(redisTemplate, "Redis template must not be null.");
+    Assert.notNull(connectionFactory, "Redis connection factory must not be null.");
+    Assert.notNull(objectMapper, "Object mapper must not be null.");
+    Assert.notNull(properties, "Redis group cache properties must not be null.");
+    Assert.notNull(meterRegistry, "Meter registry must not be null.");
+    Assert.isTrue(properties.getTimeToLive() != null
+        && !properties.getTimeToLive().isZero()
+        && !properties.getTimeToLive().isNegative(), "Time to live must be positive.");
+    this.redisTemplate = redisTemplate;
+    this.listenerContainer = new ReactiveRedisMessageListenerContainer(connectionFactory);
+    this.objectMapper = objectMapper;
+    this.keyPrefix = properties.getKeyPrefix() != null ? properties.getKeyPrefix() : "";
+    if (!keyPrefix.matches(".*\\{[^}]+}.*")) {
+      log.info("Key prefix {} of the group cache has no hash tag, redis cluster is not supported.",
+          keyPrefix);
+    }
+    this.channel = properties.getChannel();
+    this.timeToLive = properties.getTimeToLive();
+    final Duration localTimeToLive = properties.getLocalTimeToLive();
+    if (localTimeToLive == null || localTimeToLive.isZero() || localTimeToLive.isNegative()) {
+      this.localCache = null;
+    } else {
+      this.localCache = Caffeine.newBuilder()
+          .expireAfterWrite(localTimeToLive.toNanos(), TimeUnit.NANOSECONDS)
+          .maximumSize(properties.getLocalMaximumSize())
+          .build();
+    }
+    this.localHits = newCounter(meterRegistry, "local");
+    this.redisHits = newCounter(meterRegistry, "redis");
+    this.misses = newCounter(meterRegistry, "miss");
+  }
+
+  private static Counter newCounter(MeterRegistry meterRegistry, String result) {
+    return Counter.builder("groups_redis_cache_gets")
+        .description("The number of reads from the group cache.")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+
+  /**
+   * Subscribes to the invalidation channel.
+   */
+  public void start() {
+    log.info("Subscribing to redis channel {} of the group cache.", channel);
+    subscription = listenerContainer.receive(ChannelTopic.of(channel))
+        .doOnSubscribe(s -> invalidateLocally(null))
+        .map(Message::getMessage)
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1L))
+            .maxBackoff(Duration.ofMinutes(1L))
+            .doBeforeRetry(signal -> log.warn("Subscription to redis channel {} failed.",
+                channel, signal.failure())))
+        .subscribe(this::onInvalidation);
+  }
+
+  /**
+   * Cancels the subscription to the invalidation channel.
+   */
+  public void stop() {
+    if (subscription != null) {
+      subscription.dispose();
+    }
+    listenerContainer.destroy();
+  }
+
+  @Override
+  public Mono<GroupEntity> getGroup(String id, Mono<GroupEntity> source) {
+    final String key = keyPrefix + GROUP_KEY + id;
+    return get(key, GroupEntity.class)
+        .switchIfEmpty(generation(key)
+            .flatMap(generation -> source.flatMap(value -> put(
+                key, value, generation, Collections.emptyList()))))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Mono<GroupEntity> getCachedGroup(String id) {
+    return get(keyPrefix + GROUP_KEY + id, GroupEntity.class)
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Mono<Set<String>> getMembershipIds(
+      String user,
+      boolean ldap,
+      Mono<Tuple2<Set<String>, Boolean>> source) {
+
+    final String key = keyPrefix + MEMBERSHIP_KEY + user + (ldap ? LDAP_SUFFIX : "");
+    return get(key, String[].class)
+        .switchIfEmpty(generation(key).flatMap(generation -> source.flatMap(value -> {
+          final String[] ids = value.getT1().toArray(new String[0]);
+          if (!value.getT2()) {
+            log.debug("Membership ids of key {} are incomplete, they are not written.", key);
+            return Mono.just(ids);
+          }
+          return put(key, ids, generation, value.getT1().stream()
+              .map(id -> keyPrefix + MEMBERSHIP_INDEX_KEY + id)
+              .collect(Collectors.toList()));
+        })))
+        .map(value -> new LinkedHashSet<>(Arrays.asList(value)));
+  }
+
+  @Override
+  public Mono<Void> invalidate(Collection<String> groupIds, Collection<String> users) {
+    final List<String> keys = new ArrayList<>();
+    if (groupIds != null) {
+      groupIds.forEach(id -> keys.add(keyPrefix + GROUP_KEY + id));
+    }
+    if (users != null) {
+      users.forEach(user -> {
+        keys.add(keyPrefix + MEMBERSHIP_KEY + user);
+        keys.add(keyPrefix + MEMBERSHIP_KEY + user + LDAP_SUFFIX);
+      });
+    }
+    if (keys.isEmpty()) {
+      return Mono.empty();
+    }
+    // the membership ids, that contain one of the groups, are found by the membership indexes,
+    // so that also the former members are invalidated, if they are not known
+    final List<String> indexKeys = new ArrayList<>();
+    if (groupIds != null) {
+      groupIds.forEach(id -> indexKeys.add(keyPrefix + MEMBERSHIP_INDEX_KEY + id));
+    }
+    invalidateLocally(keys);
+    return Flux
+        .concat(
+            Flux.fromIterable(keys)
+                .buffer(DELETE_BATCH_SIZE)
+                .concatMap(batch -> invalidateKeys(batch, Collections.emptyList())),
+            Flux.fromIterable(indexKeys)
+                .buffer(DELETE_BATCH_SIZE)
+                .concatMap(batch -> invalidateKeys(Collections.emptyList(), batch)))
+        .collectList()
+        .flatMap(indexedKeys -> {
+          invalidateLocally(indexedKeys);
+          final List<String> allKeys = new ArrayList<>(keys);
+          allKeys.addAll(indexedKeys);
+          return publish(allKeys);
+        })
+        .doOnError(e -> log.error("Invalidating keys {} of the group cache failed.", keys, e))
+        .onErrorResume(e -> Mono.empty());
+  }
+
+  private Flux<String> invalidateKeys(List<String> keys, List<String> indexKeys) {
+    final List<String> scriptKeys = new ArrayList<>(keys);
+    keys.forEach(key -> scriptKeys.add(generationKey(key)));
+    scriptKeys.addAll(indexKeys);
+    return redisTemplate
+        .execute(
+            INVALIDATE_SCRIPT,
+            scriptKeys,
+            Arrays.asList(
+                String.valueOf(timeToLive.toMillis()),
+                String.valueOf(keys.size()),
+                keyPrefix + GENERATION_KEY,
+                String.valueOf(keyPrefix.getBytes(StandardCharsets.UTF_8).length)))
+        .flatMapIterable(json -> Arrays.asList(read(json, String[].class)));
+  }
+
+  @Override
+  public Mono<Void> invalidateAll() {
+    invalidateLocally(null);
+    final ScanOptions scanOptions = ScanOptions.scanOptions()
+        .match(keyPrefix + ALL_KEYS)
+        .count(DELETE_BATCH_SIZE)
+        .build();
+    final String globalGenerationKey = keyPrefix + GLOBAL_GENERATION_KEY;
+    return redisTemplate.opsForValue().increment(globalGenerationKey)
+        .thenMany(redisTemplate.scan(scanOptions))
+        .filter(key -> !key.equals(globalGenerationKey))
+        .buffer(DELETE_BATCH_SIZE)
+        .concatMap(keys -> redisTemplate.delete(keys.toArray(new String[0])))
+        .then(publish(Collections.singletonList(ALL_KEYS)))
+        .doOnError(e -> log.error("Invalidating all keys of the group cache failed.", e))
+        .onErrorResume(e -> Mono.empty());
+  }
+
+  private Mono<Void> publish(List<String> keys) {
+    return Mono.fromCallable(() -> objectMapper.writeValueAsString(keys))
+        .flatMap(message -> redisTemplate.convertAndSend(channel, message))
+        .then();
+  }
+
+  private void onInvalidation(String message) {
+    try {
+      final List<String> keys = Arrays.asList(objectMapper.readValue(message, String[].class));
+      invalidateLocally(keys.contains(ALL_KEYS) ? null : keys);
+    } catch (JsonProcessingException | RuntimeException e) {
+      log.error("Invalidation message {} of the group cache is invalid.", message, e);
+      invalidateLocally(null);
+    }
+  }
+
+  private void invalidateLocally(Collection<String> keys) {
+    if (localCache != null) {
+      if (keys == null) {
+        localCache.invalidateAll();
+      } else {
+        localCache.invalidateAll(keys);
+      }
+    }
+  }
+
+  private <T> Mono<T> get(String key, Class<T> valueType) {
+    if (localCache != null) {
+      final Object value = localCache.getIfPresent(key);
+      if (valueType.isInstance(value)) {
+        localHits.increment();
+        return Mono.just(valueType.cast(value));
+      }
+    }
+    return redisTemplate.opsForValue().get(key)
+        .map(json -> read(json, valueType))
+        .doOnNext(value -> {
+          redisHits.increment();
+          if (localCache != null) {
+            localCache.put(key, value);
+          }
+        })
+        .doOnError(e -> log.error("Reading key {} of the group cache failed.", key, e))
+        .onErrorResume(e -> Mono.empty())
+        .switchIfEmpty(Mono.fromRunnable(misses::increment));
+  }
+
+  private <T> T read(String json, Class<T> valueType) {
+    try {
+      return objectMapper.readValue(json, valueType);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Reading json of the group cache failed.", e);
+    }
+  }
+
+  private String generationKey(String key) {
+    return keyPrefix + GENERATION_KEY + key.substring(keyPrefix.length());
+  }
+
+  private Mono<String> generation(String key) {
+    return Mono
+        .zip(
+            redisTemplate.opsForValue().get(keyPrefix + GLOBAL_GENERATION_KEY).defaultIfEmpty("0"),
+            redisTemplate.opsForValue().get(generationKey(key)).defaultIfEmpty("0"))
+        .map(generations -> generations.getT1() + ":" + generations.getT2())
+        .doOnError(e -> log.error("Reading generation of key {} failed.", key, e))
+        .onErrorReturn(NO_GENERATION);
+  }
+
+  private <T> Mono<T> put(String key, T value, String generation, List<String> indexKeys) {
+    if (NO_GENERATION.equals(generation)) {
+      return Mono.just(value);
+    }
+    final List<String> scriptKeys = new ArrayList<>();
+    scriptKeys.add(key);
+    scriptKeys.add(keyPrefix + GLOBAL_GENERATION_KEY);
+    scriptKeys.add(generationKey(key));
+    scriptKeys.addAll(indexKeys);
+    return Mono.fromCallable(() -> objectMapper.writeValueAsString(value))
+        .flatMap(json -> redisTemplate
+            .execute(
+                PUT_SCRIPT,
+                scriptKeys,
+                Arrays.asList(generation, json, String.valueOf(timeToLive.toMillis())))
+            .next())
+        .doOnNext(written -> {
+          if (written == 0L) {
+            log.debug("Key {} was invalidated while its value was loaded, it is not written.",
+                key);
+          }
+        })
+        .doOnError(e -> log.error("Writing key {} of the group cache failed.", key, e))
+        .onErrorResume(e -> Mono.empty())
+        .thenReturn(value);
+  }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.config.LdapCacheProperties;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupEntityComparator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The caching group ldap repository decorates another group ldap repository and caches the
+ * groups by name, the groups by member and all groups. An entry, that is older than the refresh
+ * time, is reloaded in the background on its next access while the old value is returned, so
+ * frequently used entries never expire on the request path.
+ *
+ * <p>Like the ldap filters, the lookups by name and by member are case insensitive, so the keys
+ * of the caches are lower case. The cached groups are shared, so only copies are returned.
+ *
+ * @author Christian Bremer
+ */
+@Slf4j
+public class CachingGroupLdapRepository implements GroupLdapRepository {
+
+  private static final String ALL_GROUPS_KEY = "*";
+
+  private final AsyncLoadingCache<String, GroupEntity> groupsByName;
+
+  private final AsyncLoadingCache<String, List<GroupEntity>> groupsByMember;
+
+  private final AsyncLoadingCache<String, List<GroupEntity>> allGroups;
+
+  /**
+   * Instantiates a new caching group ldap repository.
+   *
+   * @param delegate the group ldap repository, that is called on a cache miss
+   * @param properties the cache properties
+   * @param meterRegistry the meter registry
+   */
+  public CachingGroupLdapRepository(
+      GroupLdapRepository delegate,
+      LdapCacheProperties properties,
+      MeterRegistry meterRegistry) {
+
+    Assert.notNull(delegate, "Group ldap repository must not be null.");
+    Assert.notNull(properties, "Ldap cache properties must not be null.");
+    this.groupsByName = newCacheBuilder(properties).buildAsync(new GroupByNameLoader(delegate));
+    this.groupsByMember = newCacheBuilder(properties)
+        .buildAsync((String member, Executor executor) -> delegate
+            .findByMembersIsContaining(member)
+            .collectList()
+            .map(Collections::unmodifiableList)
+            .toFuture());
+    this.allGroups = newCacheBuilder(properties)
+        .buildAsync((String key, Executor executor) -> delegate
+            .findAll()
+            .collectList()
+            .map(Collections::unmodifiableList)
+            .toFuture());
+    if (meterRegistry != null) {
+      CaffeineCacheMetrics.monitor(meterRegistry, groupsByName.synchronous(), "ldapGroupsByName");
+      CaffeineCacheMetrics
+          .monitor(meterRegistry, groupsByMember.synchronous(), "ldapGroupsByMember");
+      CaffeineCacheMetrics.monitor(meterRegistry, allGroups.synchronous(), "ldapGroups");
+    }
+  }
+
+  private static Caffeine<Object, Object> newCacheBuilder(LdapCacheProperties properties) {
+    final Duration timeToLive = properties.getTimeToLive();
+    final Duration refreshAfter = properties.getRefreshAfter();
+    final Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .maximumSize(properties.getMaximumSize())
+        .recordStats();
+    if (timeToLive != null && !timeToLive.isNegative() && !timeToLive.isZero()) {
+      builder.expireAfterWrite(timeToLive.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (refreshAfter != null && !refreshAfter.isNegative() && !refreshAfter.isZero()) {
+      builder.refreshAfterWrite(refreshAfter.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    return builder;
+  }
+
+  @Override
+  public Mono<Long> count() {
+    return findAll().count();
+  }
+
+  @Override
+  public Flux<GroupEntity> findAll() {
+    return Mono.defer(() -> Mono.fromFuture(allGroups.get(ALL_GROUPS_KEY)))
+        .flatMapIterable(groups -> groups)
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Flux<GroupEntity> findAllAfter(GroupEntity after) {
+    return Mono.defer(() -> Mono.fromFuture(allGroups.get(ALL_GROUPS_KEY)))
+        .flatMapIterable(groups -> GroupEntityComparator.tailAfter(groups, after))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Mono<GroupEntity> findByName(String name) {
+    if (!StringUtils.hasText(name)) {
+      return Mono.empty();
+    }
+    return Mono.defer(() -> Mono.fromFuture(groupsByName.get(key(name))))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Flux<GroupEntity> findByNameIn(List<String> names) {
+    if (names == null || names.isEmpty()) {
+      return Flux.empty();
+    }
+    final Set<String> keys = names.stream()
+        .filter(StringUtils::hasText)
+        .map(CachingGroupLdapRepository::key)
+        .collect(Collectors.toSet());
+    return Mono.defer(() -> Mono.fromFuture(groupsByName.getAll(keys)))
+        .flatMapIterable(groups -> groups.values().stream()
+            .sorted(GroupEntityComparator.INSTANCE)
+            .map(GroupEntity::copy)
+            .collect(Collectors.toList()));
+  }
+
+  @Override
+  public Flux<GroupEntity> findByMembersIsContaining(String name) {
+    if (!StringUtils.hasText(name)) {
+      return Flux.empty();
+    }
+    return Mono.defer(() -> Mono.fromFuture(groupsByMember.get(key(name))))
+        .flatMapIterable(groups -> groups)
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Flux<GroupEntity> findByMembersIsContainingAfter(String name, GroupEntity after) {
+    if (!StringUtils.hasText(name)) {
+      return Flux.empty();
+    }
+    return Mono.defer(() -> Mono.fromFuture(groupsByMember.get(key(name))))
+        .flatMapIterable(groups -> GroupEntityComparator.tailAfter(groups, after))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Mono<Long> countMembership(String name) {
+    return findByMembersIsContaining(name).count();
+  }
+
+  private static String key(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Loads the groups by name, several groups are loaded with one ldap search.
+   */
+  private static class GroupByNameLoader implements AsyncCacheLoader<String, GroupEntity> {
+
+    private final GroupLdapRepository delegate;
+
+    private GroupByNameLoader(GroupLdapRepository delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<GroupEntity> asyncLoad(String name, Executor executor) {
+      return delegate.findByName(name).toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Map<String, GroupEntity>> asyncLoadAll(
+        Iterable<? extends String> names,
+        Executor executor) {
+
+      return Flux.fromIterable(names)
+          .collectList()
+          .flatMapMany(delegate::findByNameIn)
+          .collectMap(group -> key(group.getName()))
+          .toFuture();
+    }
+  }
+
+}
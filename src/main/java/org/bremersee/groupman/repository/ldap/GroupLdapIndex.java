@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import org.bremersee.groupman.repository.GroupChange;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupEntityComparator;
+
+/**
+ * An immutable index of the ldap groups. The groups are looked up by name and by member; like
+ * the ldap filters, the lookup is case insensitive. The index remembers the latest modification
+ * date of its groups (the high-water mark), so that it can be updated with the groups, that were
+ * modified since then. The indexed groups are shared, so they must not be modified.
+ *
+ * @author Christian Bremer
+ */
+public final class GroupLdapIndex {
+
+  @Getter
+  private final List<GroupEntity> groups;
+
+  private final Map<String, GroupEntity> groupsByName;
+
+  private final Map<String, List<GroupEntity>> groupsByMember;
+
+  @Getter
+  private final Instant createdAt;
+
+  private final Date highWaterMark;
+
+  private GroupLdapIndex(Collection<GroupEntity> groups) {
+    final List<GroupEntity> sortedGroups = new ArrayList<>(groups);
+    sortedGroups.sort(GroupEntityComparator.INSTANCE);
+    final Map<String, GroupEntity> byName = new HashMap<>();
+    final Map<String, List<GroupEntity>> byMember = new HashMap<>();
+    Date maxModifiedAt = null;
+    for (GroupEntity group : sortedGroups) {
+      byName.put(key(group.getName()), group);
+      if (group.getModifiedAt() != null
+          && (maxModifiedAt == null || group.getModifiedAt().after(maxModifiedAt))) {
+        maxModifiedAt = group.getModifiedAt();
+      }
+      if (group.getMembers() != null) {
+        for (String member : group.getMembers()) {
+          // the groups are sorted, so every list of the members is sorted, too; two names of
+          // the same group, that differ only in case, have the same key and are added once
+          final List<GroupEntity> memberGroups = byMember
+              .computeIfAbsent(key(member), k -> new ArrayList<>());
+          if (memberGroups.isEmpty() || memberGroups.get(memberGroups.size() - 1) != group) {
+            memberGroups.add(group);
+          }
+        }
+      }
+    }
+    byMember.replaceAll((member, memberGroups) -> Collections.unmodifiableList(memberGroups));
+    this.groups = Collections.unmodifiableList(sortedGroups);
+    this.groupsByName = Collections.unmodifiableMap(byName);
+    this.groupsByMember = Collections.unmodifiableMap(byMember);
+    this.createdAt = Instant.now();
+    this.highWaterMark = maxModifiedAt;
+  }
+
+  /**
+   * Creates a new index of the given groups.
+   *
+   * @param groups the groups
+   * @return the group ldap index
+   */
+  public static GroupLdapIndex of(Collection<GroupEntity> groups) {
+    return new GroupLdapIndex(groups != null ? groups : Collections.emptyList());
+  }
+
+  /**
+   * Creates a new index, in which the modified groups are replaced or added. If nothing has
+   * changed, this index is returned.
+   *
+   * @param modifiedGroups the groups, that were modified since the high-water mark
+   * @return the updated index
+   */
+  public GroupLdapIndex update(Collection<GroupEntity> modifiedGroups) {
+    final Map<String, GroupEntity> updatedGroups = new HashMap<>(groupsByName);
+    boolean changed = false;
+    for (GroupEntity group : modifiedGroups) {
+      final GroupEntity old = updatedGroups.put(key(group.getName()), group);
+      changed = changed || old == null || !isSameVersion(old, group);
+    }
+    return changed ? new GroupLdapIndex(updatedGroups.values()) : this;
+  }
+
+  /**
+   * Creates a new index, in which the groups, whose names are not present anymore, are removed.
+   * If nothing has changed, this index is returned.
+   *
+   * @param presentNames the names of all existing groups
+   * @return the updated index
+   */
+  public GroupLdapIndex retainAll(Collection<String> presentNames) {
+    final Set<String> presentKeys = presentNames.stream()
+        .map(GroupLdapIndex::key)
+        .collect(Collectors.toSet());
+    final Map<String, GroupEntity> updatedGroups = new HashMap<>(groupsByName);
+    return updatedGroups.keySet().retainAll(presentKeys)
+        ? new GroupLdapIndex(updatedGroups.values())
+        : this;
+  }
+
+  /**
+   * Compares this index with a newer one and returns the changes of the groups: the groups, that
+   * were added, modified or removed, with their members before and after the change.
+   *
+   * @param newer the newer index
+   * @return the group changes
+   */
+  public List<GroupChange> changes(GroupLdapIndex newer) {
+    final Set<String> keys = new HashSet<>(groupsByName.keySet());
+    keys.addAll(newer.groupsByName.keySet());
+    final List<GroupChange> changes = new ArrayList<>();
+    for (String key : keys) {
+      final GroupEntity oldGroup = groupsByName.get(key);
+      final GroupEntity newGroup = newer.groupsByName.get(key);
+      if (oldGroup != null && newGroup != null && isSameVersion(oldGroup, newGroup)) {
+        continue;
+      }
+      final Set<String> users = new HashSet<>();
+      if (oldGroup != null && oldGroup.getMembers() != null) {
+        users.addAll(oldGroup.getMembers());
+      }
+      if (newGroup != null && newGroup.getMembers() != null) {
+        users.addAll(newGroup.getMembers());
+      }
+      changes.add(new GroupChange(
+          newGroup != null ? newGroup.getName() : oldGroup.getName(),
+          newGroup == null,
+          users));
+    }
+    return changes;
+  }
+
+  private static boolean isSameVersion(GroupEntity g1, GroupEntity g2) {
+    // the modification date has a resolution of seconds, so the content is compared, too
+    return Objects.equals(g1.getModifiedAt(), g2.getModifiedAt())
+        && Objects.equals(g1.getDescription(), g2.getDescription())
+        && Objects.equals(g1.getMembers(), g2.getMembers());
+  }
+
+  private static String key(String value) {
+    return value != null ? value.toLowerCase(Locale.ROOT) : "";
+  }
+
+  /**
+   * Gets the latest modification date of the groups.
+   *
+   * @return the high-water mark; it is {@code null}, if no group has a modification date
+   */
+  public Date getHighWaterMark() {
+    return highWaterMark != null ? new Date(highWaterMark.getTime()) : null;
+  }
+
+  /**
+   * Gets the number of groups.
+   *
+   * @return the number of groups
+   */
+  public int size() {
+    return groups.size();
+  }
+
+  /**
+   * Gets the number of members, that are member of at least one group.
+   *
+   * @return the number of members
+   */
+  public int memberSize() {
+    return groupsByMember.size();
+  }
+
+  /**
+   * Find group by name.
+   *
+   * @param name the name
+   * @return the group or {@code null}
+   */
+  public GroupEntity findByName(String name) {
+    return groupsByName.get(key(name));
+  }
+
+  /**
+   * Find groups of the specified member.
+   *
+   * @param member the member
+   * @return the sorted groups
+   */
+  public List<GroupEntity> findByMember(String member) {
+    return groupsByMember.getOrDefault(key(member), Collections.emptyList());
+  }
+
+}
@@ -37,10 +37,6 @@ import org.ldaptive.io.StringValueTranscoder;
  */
 public class GroupLdapMapper implements LdaptiveEntryMapper<GroupEntity> {
 
-  private static final String WHEN_CREATED = "whenCreated";
-
-  private static final String WHEN_CHANGED = "whenChanged";
-
   private static final GeneralizedTimeToDateValueTranscoder WHEN_TIME_VALUE_TRANSCODER
       = new GeneralizedTimeToDateValueTranscoder();
 
@@ -85,9 +81,9 @@ public class GroupLdapMapper implements LdaptiveEntryMapper<GroupEntity> {
   @Override
   public void map(LdapEntry source, GroupEntity destination) {
     destination.setCreatedAt(getAttributeValue(
-        source, WHEN_CREATED, WHEN_TIME_VALUE_TRANSCODER, null));
+        source, properties.getGroupCreatedAtAttribute(), WHEN_TIME_VALUE_TRANSCODER, null));
     destination.setModifiedAt(getAttributeValue(
-        source, WHEN_CHANGED, WHEN_TIME_VALUE_TRANSCODER, null));
+        source, properties.getGroupModifiedAtAttribute(), WHEN_TIME_VALUE_TRANSCODER, null));
     destination.setCreatedBy(properties.getAdminName());
     destination.setDescription(getAttributeValue(
         source, properties.getGroupDescriptionAttribute(), STRING_VALUE_TRANSCODER, null));
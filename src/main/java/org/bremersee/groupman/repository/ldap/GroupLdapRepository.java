@@ -16,13 +16,16 @@
 
 package org.bremersee.groupman.repository.ldap;
 
+import java.util.Date;
 import java.util.List;
 import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupEntityComparator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
- * The group ldap repository.
+ * The group ldap repository. All methods, that return more than one group, return them in the
+ * order of {@link GroupEntityComparator}.
  *
  * @author Christian Bremer
  */
@@ -46,6 +49,42 @@ public interface GroupLdapRepository {
     return Flux.empty();
   }
 
+  /**
+   * Find all groups, that come after the given group in the order of
+   * {@link GroupEntityComparator}. The default implementation reads all groups and skips the
+   * leading ones, so one page costs as much as reading the whole directory; implementations,
+   * that hold the groups in memory or can search the directory from a name on, seek the
+   * position instead.
+   *
+   * @param after the last group of the previous page (may be {@code null})
+   * @return the groups after the given group
+   */
+  default Flux<GroupEntity> findAllAfter(GroupEntity after) {
+    return skipUntilAfter(findAll(), after);
+  }
+
+  /**
+   * Find all groups, that were modified at or after the given date.
+   *
+   * @param date the date; if it is {@code null}, all groups are returned
+   * @return the modified groups
+   */
+  default Flux<GroupEntity> findByModifiedAtGreaterThanEqual(Date date) {
+    return findAll()
+        .filter(group -> date == null
+            || group.getModifiedAt() == null
+            || !group.getModifiedAt().before(date));
+  }
+
+  /**
+   * Find the names of all groups.
+   *
+   * @return the names
+   */
+  default Flux<String> findAllNames() {
+    return findAll().map(GroupEntity::getName);
+  }
+
   /**
    * Find group by name.
    *
@@ -76,6 +115,30 @@ public interface GroupLdapRepository {
     return Flux.empty();
   }
 
+  /**
+   * Find all groups with the specified member, that come after the given group in the order of
+   * {@link GroupEntityComparator}. The default implementation reads all groups of the member and
+   * skips the leading ones; implementations, that hold the groups in memory or can search the
+   * directory from a name on, seek the position instead.
+   *
+   * @param name the name of the member
+   * @param after the last group of the previous page (may be {@code null})
+   * @return the groups after the given group
+   */
+  default Flux<GroupEntity> findByMembersIsContainingAfter(String name, GroupEntity after) {
+    return skipUntilAfter(findByMembersIsContaining(name), after);
+  }
+
+  /**
+   * Find the names of all groups with the specified member.
+   *
+   * @param name the name of the member
+   * @return the names of the groups
+   */
+  default Flux<String> findNamesByMembersIsContaining(String name) {
+    return findByMembersIsContaining(name).map(GroupEntity::getName);
+  }
+
   /**
    * Count ldap membership.
    *
@@ -86,4 +149,18 @@ public interface GroupLdapRepository {
     return findByMembersIsContaining(name).count();
   }
 
+  /**
+   * Skips all groups of the sorted source, that are not after the given group.
+   *
+   * @param groups the groups, sorted by {@link GroupEntityComparator}
+   * @param after the group (may be {@code null})
+   * @return the groups after the given group
+   */
+  static Flux<GroupEntity> skipUntilAfter(Flux<GroupEntity> groups, GroupEntity after) {
+    if (after == null) {
+      return groups;
+    }
+    return groups.skipWhile(group -> GroupEntityComparator.INSTANCE.compare(group, after) <= 0);
+  }
+
 }
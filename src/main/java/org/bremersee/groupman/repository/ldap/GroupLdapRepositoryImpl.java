@@ -18,26 +18,65 @@ package org.bremersee.groupman.repository.ldap;
 
 import static org.bremersee.data.ldaptive.LdaptiveEntryMapper.createDn;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.bremersee.data.ldaptive.LdaptiveTemplate;
 import org.bremersee.groupman.config.DomainControllerProperties;
+import org.bremersee.groupman.config.LdapSchedulerConfiguration;
 import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupEntityComparator;
+import org.bremersee.groupman.repository.ldap.transcoder.GeneralizedTimeToDateValueTranscoder;
+import org.ldaptive.Connection;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.LdapException;
+import org.ldaptive.Response;
 import org.ldaptive.SearchFilter;
+import org.ldaptive.SearchOperation;
 import org.ldaptive.SearchRequest;
+import org.ldaptive.SearchResult;
+import org.ldaptive.control.PagedResultsControl;
+import org.ldaptive.control.SortKey;
+import org.ldaptive.control.SortRequestControl;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.scheduler.Scheduler;
 
 /**
- * The group ldap repository implementation.
+ * The group ldap repository implementation. The blocking ldap calls are executed on the ldap
+ * scheduler (see {@link LdapSchedulerConfiguration}), so they never block the event loop.
+ *
+ * <p>If a page size is configured, the searches for all groups use the simple paged results
+ * control: the pages are requested one after the other, when the subscriber requests more
+ * groups, and they are sorted by the directory with the (critical) server side sort control. The
+ * ordering rule must sort like the {@link GroupEntityComparator} (case sensitive), because the
+ * groups are merged with the sorted groups of mongodb; if the directory returns the groups in
+ * another order, the search fails.
+ *
+ * <p>The searches for the groups after a given group (the keyset pages) seek the position in the
+ * directory with a filter on the name ({@code cn>=...}), so that the groups before the page are
+ * not read. The ordering rule of the name attribute usually ignores the case, so the filter uses
+ * only the leading part of the name, that is ordered alike with and without case; the remaining
+ * groups before the position are skipped.
+ *
+ * <p>Large lists of names are searched in chunks, that are executed concurrently. The filter
+ * templates are cached by the number of names.
  *
  * @author Christian Bremer
  */
@@ -46,54 +85,106 @@ import reactor.core.publisher.Mono;
 @Slf4j
 public class GroupLdapRepositoryImpl implements GroupLdapRepository {
 
+  private static final GeneralizedTimeToDateValueTranscoder GENERALIZED_TIME_TRANSCODER
+      = new GeneralizedTimeToDateValueTranscoder();
+
   private final DomainControllerProperties properties;
 
   private final LdaptiveTemplate ldaptiveTemplate;
 
+  private final ConnectionFactory connectionFactory;
+
   private final GroupLdapMapper mapper;
 
+  private final Scheduler ldapScheduler;
+
+  private final Map<Integer, String> findByNamesFilters = new ConcurrentHashMap<>();
+
   /**
    * Instantiates a new group ldap repository.
    *
    * @param properties the properties
    * @param ldaptiveTemplate the ldap template
+   * @param connectionFactory the connection factory, it is only required for paged searches
+   * @param ldapScheduler the ldap scheduler
    */
   public GroupLdapRepositoryImpl(
       DomainControllerProperties properties,
-      ObjectProvider<LdaptiveTemplate> ldaptiveTemplate) {
+      ObjectProvider<LdaptiveTemplate> ldaptiveTemplate,
+      ObjectProvider<ConnectionFactory> connectionFactory,
+      @Qualifier(LdapSchedulerConfiguration.LDAP_SCHEDULER) Scheduler ldapScheduler) {
     this.properties = properties;
     this.ldaptiveTemplate = ldaptiveTemplate.getIfAvailable();
+    this.connectionFactory = connectionFactory.getIfAvailable();
     this.mapper = new GroupLdapMapper(properties);
+    this.ldapScheduler = ldapScheduler;
     Assert.notNull(this.ldaptiveTemplate, "Ldaptive template must be present.");
+    Assert.notNull(this.ldapScheduler, "Ldap scheduler must be present.");
+    Assert.isTrue(properties.getGroupFindAllPageSize() <= 0 || this.connectionFactory != null,
+        "Connection factory must be present, if a page size is configured.");
   }
 
   @Override
   public Mono<Long> count() {
-    return findAll().collect(Collectors.counting());
+    return findAllNames().count();
   }
 
   @Override
   public Flux<GroupEntity> findAll() {
-    final SearchRequest searchRequest = new SearchRequest(
-        properties.getGroupBaseDn(),
-        new SearchFilter(properties.getGroupFindAllFilter()));
-    searchRequest.setSearchScope(properties.getGroupSearchScope());
-    return Flux.fromStream(ldaptiveTemplate.findAll(searchRequest, mapper)
-        .filter(groupEntity -> !properties.getIgnoredLdapGroups().contains(groupEntity.getName())));
+    final SearchRequest searchRequest = newSearchRequest(
+        new SearchFilter(properties.getGroupFindAllFilter()),
+        properties.getGroupReturnAttributes());
+    return findAllPaged(searchRequest);
+  }
+
+  @Override
+  public Flux<GroupEntity> findAllAfter(GroupEntity after) {
+    final String from = after != null ? seekPrefix(after.getName()) : "";
+    if (from.isEmpty()) {
+      return GroupLdapRepository.skipUntilAfter(findAll(), after);
+    }
+    final SearchFilter searchFilter = new SearchFilter(properties.getGroupFindAllFromFilter());
+    searchFilter.setParameter(0, from);
+    final SearchRequest searchRequest = newSearchRequest(
+        searchFilter,
+        properties.getGroupReturnAttributes());
+    return GroupLdapRepository.skipUntilAfter(findAllPaged(searchRequest), after);
+  }
+
+  @Override
+  public Flux<GroupEntity> findByModifiedAtGreaterThanEqual(Date date) {
+    if (date == null) {
+      return findAll();
+    }
+    final SearchFilter searchFilter = new SearchFilter(
+        properties.getGroupFindModifiedSinceFilter());
+    searchFilter.setParameter(0, GENERALIZED_TIME_TRANSCODER.encodeStringValue(date));
+    final SearchRequest searchRequest = newSearchRequest(
+        searchFilter,
+        properties.getGroupReturnAttributes());
+    return findAllPaged(searchRequest);
+  }
+
+  @Override
+  public Flux<String> findAllNames() {
+    final SearchRequest searchRequest = newSearchRequest(
+        new SearchFilter(properties.getGroupFindAllFilter()),
+        properties.getGroupNameReturnAttributes());
+    return findAllPaged(searchRequest).map(GroupEntity::getName);
   }
 
   @Override
   public Mono<GroupEntity> findByName(String name) {
     final SearchFilter searchFilter = new SearchFilter(properties.getGroupFindOneFilter());
     searchFilter.setParameter(0, name);
-    final SearchRequest searchRequest = new SearchRequest(
-        properties.getGroupBaseDn(),
-        searchFilter);
-    searchRequest.setSearchScope(properties.getGroupSearchScope());
-    return ldaptiveTemplate.findOne(searchRequest, mapper)
-        .filter(groupEntity -> !properties.getIgnoredLdapGroups().contains(groupEntity.getName()))
-        .map(Mono::just)
-        .orElse(Mono.empty());
+    final SearchRequest searchRequest = newSearchRequest(
+        searchFilter,
+        properties.getGroupReturnAttributes());
+    return Mono
+        .fromCallable(() -> ldaptiveTemplate.findOne(searchRequest, mapper)
+            .filter(this::isNotIgnored)
+            .orElse(null))
+        .subscribeOn(ldapScheduler);
   }
 
   @Override
@@ -102,14 +193,30 @@ public class GroupLdapRepositoryImpl implements GroupLdapRepository {
     if (names.isEmpty()) {
       return Flux.empty();
     }
-    final SearchFilter sf = new SearchFilter(properties.getGroupFindByNamesFilter(names.size()));
-    if (!names.isEmpty()) {
-      sf.setParameters(names.toArray(new String[0]));
+    final int chunkSize = Math.max(1, properties.getGroupFindByNamesChunkSize());
+    if (names.size() <= chunkSize) {
+      return findByNameChunk(names);
     }
-    final SearchRequest searchRequest = new SearchRequest(properties.getGroupBaseDn(), sf);
-    searchRequest.setSearchScope(properties.getGroupSearchScope());
-    return Flux.fromStream(ldaptiveTemplate.findAll(searchRequest, mapper)
-        .filter(groupEntity -> !properties.getIgnoredLdapGroups().contains(groupEntity.getName())));
+    final List<List<String>> chunks = new ArrayList<>();
+    List<String> chunk = new ArrayList<>(chunkSize);
+    for (String name : names) {
+      if (chunk.size() == chunkSize) {
+        chunks.add(chunk);
+        chunk = new ArrayList<>(chunkSize);
+      }
+      chunk.add(name);
+    }
+    chunks.add(chunk);
+    return Flux.fromIterable(chunks)
+        .flatMap(this::findByNameChunk, Math.max(1, properties.getGroupFindByNamesConcurrency()))
+        .sort(GroupEntityComparator.INSTANCE);
+  }
+
+  private Flux<GroupEntity> findByNameChunk(Collection<String> names) {
+    final SearchFilter sf = new SearchFilter(findByNamesFilters
+        .computeIfAbsent(names.size(), properties::getGroupFindByNamesFilter));
+    sf.setParameters(names.toArray(new String[0]));
+    return findAll(newSearchRequest(sf, properties.getGroupReturnAttributes()));
   }
 
   @Override
@@ -117,17 +224,184 @@ public class GroupLdapRepositoryImpl implements GroupLdapRepository {
     if (!StringUtils.hasText(name)) {
       return Flux.empty();
     }
+    return findAll(newSearchRequest(
+        newFindByMemberFilter(name),
+        properties.getGroupReturnAttributes()));
+  }
+
+  @Override
+  public Flux<GroupEntity> findByMembersIsContainingAfter(String name, GroupEntity after) {
+    final String from = after != null ? seekPrefix(after.getName()) : "";
+    if (!StringUtils.hasText(name) || from.isEmpty()) {
+      return GroupLdapRepository.skipUntilAfter(findByMembersIsContaining(name), after);
+    }
+    final SearchFilter sf = new SearchFilter(
+        properties.getGroupFindByMemberContainsFromFilter());
+    sf.setParameter(0, memberValue(name));
+    sf.setParameter(1, from);
+    return GroupLdapRepository.skipUntilAfter(
+        findAll(newSearchRequest(sf, properties.getGroupReturnAttributes())),
+        after);
+  }
+
+  @Override
+  public Flux<String> findNamesByMembersIsContaining(String name) {
+    if (!StringUtils.hasText(name)) {
+      return Flux.empty();
+    }
+    return findAll(newSearchRequest(
+        newFindByMemberFilter(name),
+        properties.getGroupNameReturnAttributes()))
+        .map(GroupEntity::getName);
+  }
+
+  @Override
+  public Mono<Long> countMembership(String name) {
+    return findNamesByMembersIsContaining(name).count();
+  }
+
+  private SearchFilter newFindByMemberFilter(String name) {
     final SearchFilter sf = new SearchFilter(properties.getGroupFindByMemberContainsFilter());
-    if (properties.isMemberDn()) {
-      final String userDn = createDn(properties.getUserRdn(), name, properties.getUserBaseDn());
-      sf.setParameters(new String[]{userDn});
-    } else {
-      sf.setParameters(new String[]{name});
+    sf.setParameters(new String[]{memberValue(name)});
+    return sf;
+  }
+
+  private String memberValue(String name) {
+    return properties.isMemberDn()
+        ? createDn(properties.getUserRdn(), name, properties.getUserBaseDn())
+        : name;
+  }
+
+  /**
+   * Gets the leading part of the name, that can be used as lower bound of a case insensitive
+   * ordering: every name, that comes after the given name in the case sensitive order of the
+   * {@link GroupEntityComparator}, is greater than or equal to it, whether the directory compares
+   * the upper or the lower case. These are the lower case letters and the ascii characters, that
+   * are less than 'A' or greater than 'z', except the space, that may be normalized.
+   *
+   * @param name the name
+   * @return the leading part of the name, that can be used as lower bound
+   */
+  static String seekPrefix(String name) {
+    if (name == null) {
+      return "";
+    }
+    int end = 0;
+    while (end < name.length()) {
+      final char c = name.charAt(end);
+      if (c == ' ' || c > 127 || (c >= 'A' && c < 'a')) {
+        break;
+      }
+      end++;
     }
-    final SearchRequest searchRequest = new SearchRequest(properties.getGroupBaseDn(), sf);
+    return name.substring(0, end);
+  }
+
+  private SearchRequest newSearchRequest(SearchFilter searchFilter, String... returnAttributes) {
+    final SearchRequest searchRequest = new SearchRequest(
+        properties.getGroupBaseDn(),
+        searchFilter);
     searchRequest.setSearchScope(properties.getGroupSearchScope());
-    return Flux.fromStream(ldaptiveTemplate.findAll(searchRequest, mapper)
-        .filter(groupEntity -> !properties.getIgnoredLdapGroups().contains(groupEntity.getName())));
+    searchRequest.setReturnAttributes(returnAttributes);
+    return searchRequest;
+  }
+
+  private Flux<GroupEntity> findAll(SearchRequest searchRequest) {
+    return Flux
+        .defer(() -> Flux.fromStream(ldaptiveTemplate.findAll(searchRequest, mapper)
+            .filter(this::isNotIgnored)
+            .sorted(GroupEntityComparator.INSTANCE)))
+        .subscribeOn(ldapScheduler);
+  }
+
+  private Flux<GroupEntity> findAllPaged(SearchRequest searchRequest) {
+    final int pageSize = properties.getGroupFindAllPageSize();
+    if (pageSize <= 0) {
+      return findAll(searchRequest);
+    }
+    // The control is critical: a directory, that cannot sort with the ordering rule, must fail
+    // the search instead of returning the groups in another order.
+    final SortRequestControl sortControl = new SortRequestControl(
+        new SortKey[]{new SortKey(
+            properties.getGroupNameAttribute(),
+            properties.getGroupSortOrderingRule(),
+            false)},
+        true);
+    return Flux
+        .defer(() -> {
+          final AtomicReference<GroupEntity> last = new AtomicReference<>();
+          return Flux
+              .using(
+                  this::openConnection,
+                  connection -> Flux.generate(
+                      () -> new byte[0],
+                      (byte[] cookie, SynchronousSink<List<GroupEntity>> sink) -> nextPage(
+                          connection, searchRequest, sortControl, pageSize, cookie, sink)),
+                  Connection::close)
+              .flatMapIterable(page -> page, 1)
+              .handle((GroupEntity group, SynchronousSink<GroupEntity> sink) -> {
+                final GroupEntity previous = last.getAndSet(group);
+                if (previous != null
+                    && GroupEntityComparator.INSTANCE.compare(previous, group) > 0) {
+                  sink.error(new IllegalStateException(String.format(
+                      "The directory does not sort the groups like the group comparator "
+                          + "('%s' is returned after '%s'). Configure an ordering rule, that "
+                          + "compares case sensitive, or disable paging.",
+                      group.getName(), previous.getName())));
+                } else {
+                  sink.next(group);
+                }
+              });
+        })
+        .subscribeOn(ldapScheduler);
+  }
+
+  private Connection openConnection() throws LdapException {
+    final Connection connection = connectionFactory.getConnection();
+    if (!connection.isOpen()) {
+      connection.open();
+    }
+    return connection;
+  }
+
+  private byte[] nextPage(
+      Connection connection,
+      SearchRequest searchRequest,
+      SortRequestControl sortControl,
+      int pageSize,
+      byte[] cookie,
+      SynchronousSink<List<GroupEntity>> sink) {
+
+    try {
+      searchRequest.setControls(sortControl, new PagedResultsControl(pageSize, cookie, true));
+      final Response<SearchResult> response = new SearchOperation(connection)
+          .execute(searchRequest);
+      final List<GroupEntity> page = Stream.of(response.getResult())
+          .filter(result -> result != null && result.getEntries() != null)
+          .flatMap(result -> result.getEntries().stream())
+          .map(mapper::map)
+          .filter(this::isNotIgnored)
+          .collect(Collectors.toList());
+      final PagedResultsControl pagedResultsControl = (PagedResultsControl) response
+          .getControl(PagedResultsControl.OID);
+      final byte[] nextCookie = pagedResultsControl != null
+          ? pagedResultsControl.getCookie()
+          : null;
+      sink.next(page);
+      if (nextCookie == null || nextCookie.length == 0) {
+        sink.complete();
+        return cookie;
+      }
+      return nextCookie;
+
+    } catch (LdapException e) {
+      sink.error(e);
+      return cookie;
+    }
+  }
+
+  private boolean isNotIgnored(GroupEntity groupEntity) {
+    return !properties.getIgnoredLdapGroups().contains(groupEntity.getName());
   }
 
 }
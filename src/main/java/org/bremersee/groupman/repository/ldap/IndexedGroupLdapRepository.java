@@ -0,0 +1,373 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.bremersee.groupman.config.LdapIndexProperties;
+import org.bremersee.groupman.repository.GroupChange;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupEntityComparator;
+import org.bremersee.groupman.repository.cache.GroupCache;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The indexed group ldap repository holds all ldap groups in memory and answers the queries from
+ * an immutable {@link GroupLdapIndex}. The index is rebuilt periodically from all groups of the
+ * decorated repository and swapped atomically. In between, it is updated with the groups, that
+ * were modified since the last synchronization (delta synchronization), and, less often, the
+ * deleted groups are removed with the names of all groups (deletion synchronization). As long as
+ * there is no index, the decorated repository is called.
+ *
+ * <p>The indexed groups are shared by all callers, so only copies are returned.
+ *
+ * <p>If a synchronization changes the groups of the index, the membership ids of their members
+ * are removed from the group cache and a {@link GroupChange} is published for every changed
+ * group as application event.
+ *
+ * @author Christian Bremer
+ */
+@Slf4j
+public class IndexedGroupLdapRepository implements GroupLdapRepository {
+
+  private final GroupLdapRepository delegate;
+
+  private final LdapIndexProperties properties;
+
+  private final GroupCache groupCache;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final AtomicReference<GroupLdapIndex> index = new AtomicReference<>();
+
+  private final AtomicReference<Instant> lastSynchronization = new AtomicReference<>();
+
+  private final Timer fullSyncTimer;
+
+  private final Timer deltaSyncTimer;
+
+  private final Timer deletionSyncTimer;
+
+  private Disposable synchronization;
+
+  /**
+   * Instantiates a new indexed group ldap repository.
+   *
+   * @param delegate the group ldap repository, that is used to build the index
+   * @param properties the properties
+   * @param groupCache the group cache
+   * @param eventPublisher the event publisher
+   * @param meterRegistry the meter registry
+   */
+  public IndexedGroupLdapRepository(
+      GroupLdapRepository delegate,
+      LdapIndexProperties properties,
+      GroupCache groupCache,
+      ApplicationEventPublisher eventPublisher,
+      MeterRegistry meterRegistry) {
+
+    Assert.notNull(delegate, "Group ldap repository must not be null.");
+    Assert.notNull(properties, "Ldap index properties must not be null.");
+    Assert.notNull(groupCache, "Group cache must not be null.");
+    Assert.notNull(eventPublisher, "Event publisher must not be null.");
+    Assert.notNull(meterRegistry, "Meter registry must not be null.");
+    this.delegate = delegate;
+    this.properties = properties;
+    this.groupCache = groupCache;
+    this.eventPublisher = eventPublisher;
+    this.fullSyncTimer = Timer.builder("ldap_index_sync")
+        .description("The time to load all ldap groups and build the index.")
+        .tag("type", "full")
+        .register(meterRegistry);
+    this.deltaSyncTimer = Timer.builder("ldap_index_sync")
+        .description("The time to load the modified ldap groups and update the index.")
+        .tag("type", "delta")
+        .register(meterRegistry);
+    this.deletionSyncTimer = Timer.builder("ldap_index_sync")
+        .description("The time to load the names of all ldap groups and remove the deleted ones.")
+        .tag("type", "deletion")
+        .register(meterRegistry);
+    Gauge.builder("ldap_index_groups_size", index, ref -> sizeOf(ref.get(), false))
+        .description("The number of groups in the ldap index.")
+        .register(meterRegistry);
+    Gauge.builder("ldap_index_members_size", index, ref -> sizeOf(ref.get(), true))
+        .description("The number of members in the ldap index.")
+        .register(meterRegistry);
+    Gauge.builder("ldap_index_staleness", lastSynchronization, ref -> staleness(ref.get()))
+        .description("The time since the last successful synchronization of the ldap index.")
+        .baseUnit("seconds")
+        .register(meterRegistry);
+  }
+
+  private static double sizeOf(GroupLdapIndex index, boolean members) {
+    if (index == null) {
+      return 0.;
+    }
+    return members ? index.memberSize() : index.size();
+  }
+
+  private static double staleness(Instant lastSynchronization) {
+    if (lastSynchronization == null) {
+      return Double.NaN;
+    }
+    return Duration.between(lastSynchronization, Instant.now()).toMillis() / 1000.;
+  }
+
+  /**
+   * Starts the periodic synchronization of the index. The full, the delta and the deletion
+   * synchronizations are executed one after the other, never at the same time.
+   */
+  public void start() {
+    log.info("Starting synchronization of ldap group index with {}", properties);
+    synchronization = Flux
+        .merge(
+            Flux.interval(Duration.ZERO, properties.getSyncInterval())
+                .map(tick -> SyncType.FULL),
+            ticks(properties.getDeltaSyncInterval(), SyncType.MODIFICATIONS),
+            ticks(properties.getDeletionSyncInterval(), SyncType.DELETIONS))
+        .onBackpressureDrop()
+        .concatMap(this::synchronize, 1)
+        .subscribe();
+  }
+
+  private static Flux<SyncType> ticks(Duration interval, SyncType syncType) {
+    if (interval == null || interval.isZero() || interval.isNegative()) {
+      return Flux.empty();
+    }
+    return Flux.interval(interval).map(tick -> syncType);
+  }
+
+  private Mono<GroupLdapIndex> synchronize(SyncType syncType) {
+    switch (syncType) {
+      case MODIFICATIONS:
+        return synchronizeModifications();
+      case DELETIONS:
+        return synchronizeDeletions();
+      default:
+        return synchronize();
+    }
+  }
+
+  /**
+   * Stops the periodic synchronization of the index.
+   */
+  public void stop() {
+    if (synchronization != null) {
+      synchronization.dispose();
+    }
+  }
+
+  /**
+   * Loads all groups of the decorated repository and replaces the index.
+   *
+   * @return the new index
+   */
+  Mono<GroupLdapIndex> synchronize() {
+    return synchronize(fullSyncTimer, () -> delegate.findAll()
+        .collectList()
+        .map(GroupLdapIndex::of));
+  }
+
+  /**
+   * Loads the groups, that were modified since the high-water mark of the current index, and
+   * updates the index with them. If there is no index or no high-water mark, a full
+   * synchronization is done.
+   *
+   * @return the updated index
+   */
+  Mono<GroupLdapIndex> synchronizeModifications() {
+    final GroupLdapIndex current = index.get();
+    if (current == null || current.getHighWaterMark() == null) {
+      return synchronize();
+    }
+    return synchronize(deltaSyncTimer, () -> delegate
+        .findByModifiedAtGreaterThanEqual(current.getHighWaterMark())
+        .collectList()
+        .map(current::update));
+  }
+
+  /**
+   * Loads the names of all groups and removes the deleted groups from the index. If there is no
+   * index, nothing is done.
+   *
+   * @return the updated index
+   */
+  Mono<GroupLdapIndex> synchronizeDeletions() {
+    if (index.get() == null) {
+      return Mono.empty();
+    }
+    return synchronize(deletionSyncTimer, () -> delegate.findAllNames()
+        .collectList()
+        // the index may have been replaced in the meantime
+        .map(names -> index.get().retainAll(names)));
+  }
+
+  private Mono<GroupLdapIndex> synchronize(
+      Timer timer,
+      Supplier<Mono<GroupLdapIndex>> indexSupplier) {
+    return Mono
+        .defer(() -> {
+          final long start = System.nanoTime();
+          return indexSupplier.get()
+              .flatMap(newIndex -> {
+                final GroupLdapIndex oldIndex = index.getAndSet(newIndex);
+                lastSynchronization.set(Instant.now());
+                final long duration = System.nanoTime() - start;
+                timer.record(duration, TimeUnit.NANOSECONDS);
+                log.debug("Ldap group index with {} groups was synchronized in {} ms.",
+                    newIndex.size(), TimeUnit.NANOSECONDS.toMillis(duration));
+                return changed(oldIndex, newIndex).thenReturn(newIndex);
+              });
+        })
+        .onErrorResume(error -> {
+          log.error("Synchronizing ldap group index failed.", error);
+          return Mono.empty();
+        });
+  }
+
+  private Mono<Void> changed(GroupLdapIndex oldIndex, GroupLdapIndex newIndex) {
+    if (oldIndex == null || oldIndex == newIndex) {
+      return Mono.empty();
+    }
+    final List<GroupChange> changes = oldIndex.changes(newIndex);
+    if (changes.isEmpty()) {
+      return Mono.empty();
+    }
+    final Set<String> users = changes.stream()
+        .flatMap(change -> change.getUsers().stream())
+        .collect(Collectors.toSet());
+    return groupCache.invalidate(Collections.emptySet(), users)
+        .doOnSuccess(v -> changes.forEach(eventPublisher::publishEvent));
+  }
+
+  @Override
+  public Mono<Long> count() {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.count();
+    }
+    return Mono.just((long) current.size());
+  }
+
+  @Override
+  public Flux<GroupEntity> findAll() {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.findAll();
+    }
+    return Flux.fromIterable(current.getGroups())
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Flux<GroupEntity> findAllAfter(GroupEntity after) {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.findAllAfter(after);
+    }
+    return Flux.fromIterable(GroupEntityComparator.tailAfter(current.getGroups(), after))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Mono<GroupEntity> findByName(String name) {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.findByName(name);
+    }
+    return Mono.justOrEmpty(current.findByName(name))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Flux<GroupEntity> findByNameIn(List<String> names) {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.findByNameIn(names);
+    }
+    if (names == null || names.isEmpty()) {
+      return Flux.empty();
+    }
+    return Flux.fromIterable(names.stream()
+        .map(current::findByName)
+        .filter(Objects::nonNull)
+        .distinct()
+        .sorted(GroupEntityComparator.INSTANCE)
+        .map(GroupEntity::copy)
+        .collect(Collectors.toList()));
+  }
+
+  @Override
+  public Flux<GroupEntity> findByMembersIsContaining(String name) {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.findByMembersIsContaining(name);
+    }
+    if (!StringUtils.hasText(name)) {
+      return Flux.empty();
+    }
+    return Flux.fromIterable(current.findByMember(name))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Flux<GroupEntity> findByMembersIsContainingAfter(String name, GroupEntity after) {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.findByMembersIsContainingAfter(name, after);
+    }
+    if (!StringUtils.hasText(name)) {
+      return Flux.empty();
+    }
+    return Flux.fromIterable(GroupEntityComparator.tailAfter(current.findByMember(name), after))
+        .map(GroupEntity::copy);
+  }
+
+  @Override
+  public Mono<Long> countMembership(String name) {
+    final GroupLdapIndex current = index.get();
+    if (current == null) {
+      return delegate.countMembership(name);
+    }
+    if (!StringUtils.hasText(name)) {
+      return Mono.just(0L);
+    }
+    return Mono.just((long) current.findByMember(name).size());
+  }
+
+  private enum SyncType {
+    FULL, MODIFICATIONS, DELETIONS
+  }
+
+}
@@ -68,4 +68,24 @@ class DomainControllerPropertiesTest {
     String actual = properties.getGroupFindByMemberContainsFilter();
     assertEquals(expected, actual);
   }
-}
\ No newline at end of file
+
+  /**
+   * Gets group return attributes.
+   */
+  @Test
+  void getGroupReturnAttributes() {
+    String[] expected = {"cn", "description", "member", "whenCreated", "whenChanged"};
+    String[] actual = properties.getGroupReturnAttributes();
+    assertArrayEquals(expected, actual);
+  }
+
+  /**
+   * Gets group name return attributes.
+   */
+  @Test
+  void getGroupNameReturnAttributes() {
+    String[] expected = {"cn"};
+    String[] actual = properties.getGroupNameReturnAttributes();
+    assertArrayEquals(expected, actual);
+  }
+}
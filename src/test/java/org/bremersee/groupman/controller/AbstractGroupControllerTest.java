@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import static org.bremersee.groupman.controller.AbstractGroupController.decodeContinuationToken;
+import static org.bremersee.groupman.controller.AbstractGroupController.encodeContinuationToken;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.bremersee.exception.ServiceException;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The abstract group controller test.
+ *
+ * @author Christian Bremer
+ */
+class AbstractGroupControllerTest {
+
+  /**
+   * Encode and decode continuation token.
+   */
+  @Test
+  void encodeAndDecodeContinuationToken() {
+    GroupEntity group = GroupEntity.builder()
+        .id("developers")
+        .name("developers")
+        .createdBy("Administrator")
+        .source(Source.LDAP)
+        .build();
+    GroupEntity actual = decodeContinuationToken(encodeContinuationToken(group));
+    assertEquals("developers", actual.getId());
+    assertEquals("developers", actual.getName());
+    assertEquals("Administrator", actual.getCreatedBy());
+    assertEquals(Source.LDAP, actual.getSource());
+  }
+
+  /**
+   * Encode and decode continuation token without creator.
+   */
+  @Test
+  void encodeAndDecodeContinuationTokenWithoutCreator() {
+    GroupEntity group = GroupEntity.builder()
+        .id("GACT0")
+        .name("Group0")
+        .source(Source.INTERNAL)
+        .build();
+    assertNull(decodeContinuationToken(encodeContinuationToken(group)).getCreatedBy());
+
+    group.setCreatedBy("");
+    assertEquals("", decodeContinuationToken(encodeContinuationToken(group)).getCreatedBy());
+  }
+
+  /**
+   * Decode invalid continuation token.
+   */
+  @Test
+  void decodeInvalidContinuationToken() {
+    assertNull(decodeContinuationToken(null));
+    assertThrows(ServiceException.class, () -> decodeContinuationToken("%%%"));
+    assertThrows(ServiceException.class, () -> decodeContinuationToken(Base64.getUrlEncoder()
+        .encodeToString("Group0\u0000=anna".getBytes(StandardCharsets.UTF_8))));
+  }
+
+}
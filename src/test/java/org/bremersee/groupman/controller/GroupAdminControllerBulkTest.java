@@ -0,0 +1,295 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import static org.bremersee.security.core.AuthorityConstants.ADMIN_ROLE_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bremersee.groupman.config.CodecConfiguration;
+import org.bremersee.groupman.controller.GroupBulkOperation.Type;
+import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupRepository;
+import org.bremersee.test.security.authentication.WithJwtAuthenticationToken;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.test.StepVerifier;
+
+/**
+ * The group admin controller bulk tests.
+ *
+ * @author Christian Bremer
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=http://localhost/jwk",
+    "bremersee.groupman.bulk-batch-size=2"
+})
+@TestInstance(Lifecycle.PER_CLASS) // allows us to use @BeforeAll with a non-static method
+class GroupAdminControllerBulkTest {
+
+  private static final GroupEntity group0 = GroupEntity.builder()
+      .id("GACBT0")
+      .source(Source.INTERNAL)
+      .name("Group0")
+      .description("Group One")
+      .createdAt(new Date())
+      .modifiedAt(new Date())
+      .createdBy("molly")
+      .owners(Collections.singleton("molly"))
+      .build();
+
+  private static final GroupEntity group1 = GroupEntity.builder()
+      .id("GACBT1")
+      .source(Source.INTERNAL)
+      .name("Group1")
+      .description("Group Two")
+      .createdAt(new Date())
+      .modifiedAt(new Date())
+      .createdBy("molly")
+      .owners(Collections.singleton("molly"))
+      .build();
+
+  private static final GroupEntity group2 = GroupEntity.builder()
+      .id("GACBT2")
+      .source(Source.INTERNAL)
+      .name("Group2")
+      .description("Group Three")
+      .createdAt(new Date())
+      .modifiedAt(new Date())
+      .createdBy("molly")
+      .owners(Collections.singleton("molly"))
+      .build();
+
+  /**
+   * The web test client.
+   */
+  @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
+  @Autowired
+  WebTestClient webTestClient;
+
+  /**
+   * The Group repository.
+   */
+  @Autowired
+  GroupRepository groupRepository;
+
+  /**
+   * Sets up data.
+   */
+  @BeforeAll
+  void setUpData() {
+    StepVerifier
+        .create(groupRepository.save(group0))
+        .assertNext(groupEntity -> assertEquals("GACBT0", groupEntity.getId()))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.save(group1))
+        .assertNext(groupEntity -> assertEquals("GACBT1", groupEntity.getId()))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.save(group2))
+        .assertNext(groupEntity -> assertEquals("GACBT2", groupEntity.getId()))
+        .verifyComplete();
+  }
+
+  /**
+   * Execute unordered bulk operations.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "admin",
+      roles = {ADMIN_ROLE_NAME})
+  @Test
+  void executeUnorderedBulkOperations() {
+    List<GroupBulkOperation> operations = Arrays.asList(
+        new GroupBulkOperation(Type.CREATE, null, Group.builder()
+            .name("BulkGroup0")
+            .members(Collections.singletonList("anna"))
+            .build()),
+        new GroupBulkOperation(Type.CREATE, null, Group.builder()
+            .description("Name is missing")
+            .build()),
+        new GroupBulkOperation(Type.UPDATE, "GACBT0", Group.builder()
+            .name("Group0")
+            .description("Updated group")
+            .owners(Collections.singletonList("molly"))
+            .build()),
+        new GroupBulkOperation(Type.UPDATE, "GACBTX", Group.builder()
+            .name("Unknown")
+            .build()),
+        new GroupBulkOperation(Type.DELETE, "GACBT1", null));
+
+    List<GroupBulkResult> results = webTestClient
+        .post()
+        .uri("/api/admin/groups/bulk?ordered=false")
+        .accept(MediaType.APPLICATION_JSON)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(BodyInserters.fromValue(operations))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(GroupBulkResult.class)
+        .returnResult()
+        .getResponseBody();
+
+    assertNotNull(results);
+    assertEquals(
+        Arrays.asList(0L, 1L, 2L, 3L, 4L),
+        results.stream().map(GroupBulkResult::getIndex).collect(Collectors.toList()));
+    assertEquals(
+        Arrays.asList(201, 400, 200, 404, 200),
+        results.stream().map(GroupBulkResult::getStatus).collect(Collectors.toList()));
+    assertNotNull(results.get(0).getId());
+
+    StepVerifier
+        .create(groupRepository.findById(results.get(0).getId()))
+        .assertNext(groupEntity -> {
+          assertEquals("BulkGroup0", groupEntity.getName());
+          assertEquals("admin", groupEntity.getCreatedBy());
+          assertEquals(Collections.singleton("anna"), groupEntity.getMembers());
+        })
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.findById("GACBT0"))
+        .assertNext(groupEntity -> {
+          assertEquals("Updated group", groupEntity.getDescription());
+          assertEquals(1L, groupEntity.getVersion());
+        })
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.findById("GACBT1"))
+        .verifyComplete();
+  }
+
+  /**
+   * Execute ordered bulk operations.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "admin",
+      roles = {ADMIN_ROLE_NAME})
+  @Test
+  void executeOrderedBulkOperations() {
+    List<GroupBulkOperation> operations = Arrays.asList(
+        new GroupBulkOperation(Type.CREATE, null, Group.builder()
+            .name("BulkGroup1")
+            .build()),
+        new GroupBulkOperation(Type.DELETE, null, null),
+        new GroupBulkOperation(Type.CREATE, null, Group.builder()
+            .name("BulkGroup2")
+            .build()));
+
+    List<GroupBulkResult> results = webTestClient
+        .post()
+        .uri("/api/admin/groups/bulk")
+        .accept(MediaType.APPLICATION_JSON)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(BodyInserters.fromValue(operations))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(GroupBulkResult.class)
+        .returnResult()
+        .getResponseBody();
+
+    assertNotNull(results);
+    assertEquals(
+        Arrays.asList(201, 404, 424),
+        results.stream().map(GroupBulkResult::getStatus).collect(Collectors.toList()));
+  }
+
+  /**
+   * Execute bulk operations with duplicate ids.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "admin",
+      roles = {ADMIN_ROLE_NAME})
+  @Test
+  void executeBulkOperationsWithDuplicateIds() {
+    List<GroupBulkOperation> operations = Arrays.asList(
+        new GroupBulkOperation(Type.UPDATE, "GACBT2", Group.builder()
+            .name("Group2")
+            .description("First update")
+            .build()),
+        new GroupBulkOperation(Type.UPDATE, "GACBT2", Group.builder()
+            .name("Group2")
+            .description("Second update")
+            .build()));
+
+    List<GroupBulkResult> results = webTestClient
+        .post()
+        .uri("/api/admin/groups/bulk?ordered=false")
+        .accept(MediaType.APPLICATION_JSON)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(BodyInserters.fromValue(operations))
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(GroupBulkResult.class)
+        .returnResult()
+        .getResponseBody();
+
+    assertNotNull(results);
+    assertEquals(
+        Arrays.asList(400, 400),
+        results.stream().map(GroupBulkResult::getStatus).collect(Collectors.toList()));
+
+    StepVerifier
+        .create(groupRepository.findById("GACBT2"))
+        .assertNext(groupEntity -> assertEquals("Group Three", groupEntity.getDescription()))
+        .verifyComplete();
+  }
+
+  /**
+   * Execute bulk operations as newline delimited json.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "admin",
+      roles = {ADMIN_ROLE_NAME})
+  @Test
+  void executeBulkOperationsAsNdjson() {
+    List<GroupBulkResult> results = webTestClient
+        .post()
+        .uri("/api/admin/groups/bulk")
+        .accept(CodecConfiguration.APPLICATION_NDJSON)
+        .contentType(CodecConfiguration.APPLICATION_NDJSON)
+        .body(BodyInserters.fromValue(
+            "{\"type\":\"CREATE\",\"group\":{\"name\":\"BulkGroup3\"}}\n"
+                + "{\"type\":\"CREATE\",\"group\":{\"name\":\"BulkGroup4\"}}\n"))
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(CodecConfiguration.APPLICATION_NDJSON)
+        .expectBodyList(GroupBulkResult.class)
+        .returnResult()
+        .getResponseBody();
+
+    assertNotNull(results);
+    assertEquals(
+        Arrays.asList(201, 201),
+        results.stream().map(GroupBulkResult::getStatus).collect(Collectors.toList()));
+  }
+
+}
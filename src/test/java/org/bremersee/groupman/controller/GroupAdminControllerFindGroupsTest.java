@@ -23,9 +23,13 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.bremersee.groupman.config.CodecConfiguration;
 import org.bremersee.groupman.model.Group;
 import org.bremersee.groupman.model.Source;
 import org.bremersee.groupman.repository.GroupEntity;
@@ -42,6 +46,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 /**
@@ -98,6 +103,17 @@ class GroupAdminControllerFindGroupsTest {
       .createdBy("someone else")
       .build();
 
+  // has the same name and creator as the ldap group
+  private static final GroupEntity group2 = GroupEntity.builder()
+      .id("GACFGT2")
+      .source(Source.INTERNAL)
+      .name("developers")
+      .description("Group Three")
+      .createdAt(new Date())
+      .modifiedAt(new Date())
+      .createdBy("Administrator")
+      .build();
+
   /**
    * The web test client.
    */
@@ -130,6 +146,10 @@ class GroupAdminControllerFindGroupsTest {
           assertEquals("GACFGT1", groupEntity.getId());
         })
         .verifyComplete();
+    StepVerifier
+        .create(groupRepository.save(group2))
+        .assertNext(groupEntity -> assertEquals("GACFGT2", groupEntity.getId()))
+        .verifyComplete();
   }
 
   /**
@@ -165,9 +185,84 @@ class GroupAdminControllerFindGroupsTest {
           // from embedded ldap:
           assertTrue(groups.stream().anyMatch(group -> group.getName().equals("developers")));
           assertTrue(groups.stream().anyMatch(group -> group.getName().equals("managers")));
+          assertTrue(groups.stream().anyMatch(group -> group.getName().equals("alpha")));
+          assertTrue(groups.stream().anyMatch(group -> group.getName().equals("Zeta")));
+          // mongodb and ldap are sorted the same way (case sensitive)
+          List<String> names = groups.stream().map(Group::getName).collect(Collectors.toList());
+          assertEquals(names.stream().sorted().collect(Collectors.toList()), names);
         });
   }
 
+  /**
+   * Find groups as newline delimited json and expect ok.
+   */
+  @WithJwtAuthenticationToken(roles = {ADMIN_ROLE_NAME})
+  @Test
+  void findGroupsAsStreamAndExpectOk() {
+    Flux<Group> groups = webTestClient
+        .get()
+        .uri("/api/admin/groups")
+        .accept(CodecConfiguration.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(CodecConfiguration.APPLICATION_NDJSON)
+        .returnResult(Group.class)
+        .getResponseBody();
+    StepVerifier.create(groups.map(Group::getName).collectList())
+        .assertNext(names -> {
+          assertTrue(names.contains(group0.getName()));
+          assertTrue(names.contains(group1.getName()));
+          // from embedded ldap:
+          assertTrue(names.contains("developers"));
+          assertTrue(names.contains("managers"));
+        })
+        .verifyComplete();
+  }
+
+  /**
+   * Find group pages and expect all groups.
+   */
+  @WithJwtAuthenticationToken(roles = {ADMIN_ROLE_NAME})
+  @Test
+  void findGroupPagesAndExpectAllGroups() {
+    List<String> expected = webTestClient
+        .get()
+        .uri("/api/admin/groups")
+        .accept(MediaType.APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectBodyList(Group.class)
+        .returnResult()
+        .getResponseBody()
+        .stream()
+        .map(Group::getName)
+        .collect(Collectors.toList());
+
+    List<String> actual = new ArrayList<>();
+    String token = null;
+    do {
+      GroupPage page = webTestClient
+          .get()
+          .uri(token == null
+              ? "/api/admin/groups/f/page?limit=1"
+              : "/api/admin/groups/f/page?limit=1&token=" + token)
+          .accept(MediaType.APPLICATION_JSON)
+          .exchange()
+          .expectStatus().isOk()
+          .expectBody(GroupPage.class)
+          .returnResult()
+          .getResponseBody();
+      assertNotNull(page);
+      assertTrue(page.getGroups().size() <= 1);
+      page.getGroups().forEach(group -> actual.add(group.getName()));
+      token = page.getContinuationToken();
+    } while (token != null);
+
+    assertEquals(expected, actual);
+    // the groups of mongodb and ldap with the same name and creator are both paged
+    assertEquals(2, actual.stream().filter("developers"::equals).count());
+  }
+
   /**
    * Find group by id and expect ok.
    */
@@ -25,17 +25,20 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.bremersee.groupman.config.CodecConfiguration;
 import org.bremersee.groupman.model.Group;
 import org.bremersee.groupman.model.Source;
 import org.bremersee.groupman.model.Status;
 import org.bremersee.groupman.repository.GroupEntity;
 import org.bremersee.groupman.repository.GroupRepository;
 import org.bremersee.test.security.authentication.WithJwtAuthenticationToken;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
@@ -197,6 +200,45 @@ class GroupControllerGetGroupsTest {
         .expectStatus().isNotFound();
   }
 
+  /**
+   * Gets group by object id and expect not found.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "molly",
+      roles = {USER_ROLE_NAME})
+  @Test
+  void getGroupByObjectIdAndExpectNotFound() {
+    webTestClient
+        .get()
+        .uri("/api/groups/{id}", new ObjectId().toHexString())
+        .accept(MediaType.APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
+  /**
+   * Gets an unknown group twice and expect not found.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "molly",
+      roles = {USER_ROLE_NAME})
+  @Test
+  void getUnknownGroupTwiceAndExpectNotFound() {
+    String id = UUID.randomUUID().toString();
+    webTestClient
+        .get()
+        .uri("/api/groups/{id}", id)
+        .accept(MediaType.APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isNotFound();
+    webTestClient
+        .get()
+        .uri("/api/groups/{id}", id)
+        .accept(MediaType.APPLICATION_JSON)
+        .exchange()
+        .expectStatus().isNotFound();
+  }
+
   /**
    * Gets group by ids and expect ok.
    */
@@ -218,6 +260,52 @@ class GroupControllerGetGroupsTest {
         });
   }
 
+  /**
+   * Gets group by id as cbor and expect ok.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "molly",
+      roles = {USER_ROLE_NAME})
+  @Test
+  void getGroupByIdAsCborAndExpectOk() {
+    webTestClient
+        .get()
+        .uri("/api/groups/{id}", "GCGGT0")
+        .accept(MediaType.APPLICATION_CBOR)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR)
+        .expectBody(Group.class)
+        .value((Consumer<Group>) group -> {
+          assertEquals(group0.getName(), group.getName());
+          assertEquals(group0.getMembers(), new HashSet<>(group.getMembers()));
+          assertNotNull(group.getCreatedAt());
+        });
+  }
+
+  /**
+   * Gets group by ids as smile and expect ok.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "molly",
+      roles = {USER_ROLE_NAME})
+  @Test
+  void getGroupByIdsAsSmileAndExpectOk() {
+    webTestClient
+        .get()
+        .uri("/api/groups/f?id=GCGGT0&id=GCGGT1")
+        .accept(CodecConfiguration.APPLICATION_SMILE)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(CodecConfiguration.APPLICATION_SMILE)
+        .expectBodyList(Group.class)
+        .value(groups -> {
+          assertEquals(2, groups.size());
+          assertTrue(groups.stream().anyMatch(group -> group.getName().equals(group0.getName())));
+          assertTrue(groups.stream().anyMatch(group -> group.getName().equals(group1.getName())));
+        });
+  }
+
   /**
    * Gets editable groups and expect ok.
    */
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.bremersee.groupman.controller;
+
+import static org.bremersee.security.core.AuthorityConstants.USER_ROLE_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Date;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bremersee.groupman.config.CodecConfiguration;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupChange;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupRepository;
+import org.bremersee.test.security.authentication.WithJwtAuthenticationToken;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * The group controller membership stream test.
+ *
+ * @author Christian Bremer
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=http://localhost/jwk",
+    "bremersee.groupman.membership-stream-refresh-interval=1h"
+})
+@TestInstance(Lifecycle.PER_CLASS) // allows us to use @BeforeAll with a non-static method
+class GroupControllerMembershipStreamTest {
+
+  private static final GroupEntity group0 = GroupEntity.builder()
+      .id("GCMST0")
+      .source(Source.INTERNAL)
+      .name("StreamGroup0")
+      .description("Stream Group One")
+      .createdAt(new Date())
+      .modifiedAt(new Date())
+      .createdBy("leopold")
+      .owners(Collections.singleton("leopold"))
+      .members(Stream.of("molly", "leopold").collect(Collectors.toSet()))
+      .build();
+
+  private static final GroupEntity group1 = GroupEntity.builder()
+      .id("GCMST1")
+      .source(Source.INTERNAL)
+      .name("StreamGroup1")
+      .description("Stream Group Two")
+      .createdAt(new Date())
+      .modifiedAt(new Date())
+      .createdBy("leopold")
+      .owners(Collections.singleton("leopold"))
+      .members(Collections.singleton("leopold"))
+      .build();
+
+  /**
+   * The web test client.
+   */
+  @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
+  @Autowired
+  WebTestClient webTestClient;
+
+  /**
+   * The group repository.
+   */
+  @Autowired
+  GroupRepository groupRepository;
+
+  /**
+   * The event publisher.
+   */
+  @Autowired
+  ApplicationEventPublisher eventPublisher;
+
+  /**
+   * Sets up data.
+   */
+  @BeforeAll
+  void setUpData() {
+    StepVerifier
+        .create(groupRepository.saveAll(Flux.just(group0, group1)))
+        .expectNextCount(2)
+        .verifyComplete();
+  }
+
+  /**
+   * Stream membership id changes.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "molly",
+      roles = {USER_ROLE_NAME})
+  @Test
+  void streamMembershipIdChanges() {
+    Flux<MembershipChange> changes = webTestClient
+        .get()
+        .uri("/api/groups/f/membership-ids/stream")
+        .accept(MediaType.TEXT_EVENT_STREAM)
+        .exchange()
+        .expectStatus().isOk()
+        .returnResult(MembershipChange.class)
+        .getResponseBody();
+
+    StepVerifier.create(changes)
+        .assertNext(change -> {
+          assertTrue(change.isSnapshot());
+          assertTrue(change.getAdded().contains(group0.getId()));
+          assertFalse(change.getAdded().contains(group1.getId()));
+          assertTrue(change.getRemoved().isEmpty());
+        })
+        // the change is written and published without blocking the thread of the stream
+        .then(() -> groupRepository
+            .addMembers(group1.getId(), Collections.singleton("molly"), "leopold")
+            .doOnNext(groupEntity -> eventPublisher.publishEvent(new GroupChange(
+                groupEntity.getId(), false, Collections.singleton("molly"))))
+            .subscribe())
+        .assertNext(change -> {
+          assertFalse(change.isSnapshot());
+          assertEquals(Collections.singleton(group1.getId()), change.getAdded());
+          assertTrue(change.getRemoved().isEmpty());
+        })
+        .thenCancel()
+        .verify(Duration.ofSeconds(30L));
+  }
+
+  /**
+   * Stream membership id changes as newline delimited json.
+   */
+  @WithJwtAuthenticationToken(
+      preferredUsername = "molly",
+      roles = {USER_ROLE_NAME})
+  @Test
+  void streamMembershipIdChangesAsNdjson() {
+    Flux<MembershipChange> changes = webTestClient
+        .get()
+        .uri("/api/groups/f/membership-ids/stream")
+        .accept(CodecConfiguration.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(CodecConfiguration.APPLICATION_NDJSON)
+        .returnResult(MembershipChange.class)
+        .getResponseBody();
+
+    StepVerifier.create(changes)
+        .assertNext(change -> {
+          assertTrue(change.isSnapshot());
+          assertTrue(change.getAdded().contains(group0.getId()));
+        })
+        .thenCancel()
+        .verify(Duration.ofSeconds(30L));
+  }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import org.bremersee.groupman.config.ModelMapperConfiguration;
+import org.bremersee.groupman.model.Group;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+/**
+ * The group mapper test. It compares the results with the results of the model mapper.
+ *
+ * @author Christian Bremer
+ */
+class GroupMapperTest {
+
+  private static final ModelMapper modelMapper = new ModelMapper();
+
+  /**
+   * Sets up the model mapper.
+   */
+  @BeforeAll
+  static void setUp() {
+    new ModelMapperConfiguration().configure(modelMapper);
+  }
+
+  /**
+   * To group.
+   */
+  @Test
+  void toGroup() {
+    GroupEntity source = GroupEntity.builder()
+        .id("GMT0")
+        .version(3L)
+        .createdBy("anna")
+        .createdAt(new Date(1577836800000L))
+        .modifiedAt(new Date())
+        .source(Source.INTERNAL)
+        .name("Group0")
+        .description("A group")
+        .members(new LinkedHashSet<>(Arrays.asList("hans", "anna", "leopold")))
+        .owners(new LinkedHashSet<>(Arrays.asList("anna", "stephen")))
+        .build();
+
+    Group expected = new Group();
+    expected.setMembers(new ArrayList<>());
+    expected.setOwners(new ArrayList<>());
+    modelMapper.map(source, expected);
+
+    assertGroupEquals(expected, GroupMapper.toGroup(source));
+  }
+
+  /**
+   * To group without dates.
+   */
+  @Test
+  void toGroupWithoutDates() {
+    GroupEntity source = GroupEntity.builder()
+        .id("GMT1")
+        .source(Source.LDAP)
+        .name("Group1")
+        .members(new LinkedHashSet<>())
+        .owners(new LinkedHashSet<>())
+        .build();
+
+    Group expected = new Group();
+    expected.setMembers(new ArrayList<>());
+    expected.setOwners(new ArrayList<>());
+    modelMapper.map(source, expected);
+
+    Group actual = GroupMapper.toGroup(source);
+    assertNull(actual.getCreatedAt());
+    assertGroupEquals(expected, actual);
+  }
+
+  /**
+   * To group entity.
+   */
+  @Test
+  void toGroupEntity() {
+    Group source = Group.builder()
+        .id("GMT2")
+        .version(1L)
+        .createdBy("anna")
+        .createdAt(OffsetDateTime.of(2020, 1, 1, 12, 0, 0, 0, ZoneOffset.ofHours(2)))
+        .modifiedAt(OffsetDateTime.now(ZoneOffset.UTC))
+        .source(Source.INTERNAL)
+        .name("Group2")
+        .description("Another group")
+        .members(Arrays.asList("hans", "anna"))
+        .owners(Arrays.asList("anna", "anna", "stephen"))
+        .build();
+
+    GroupEntity expected = new GroupEntity();
+    modelMapper.map(source, expected);
+
+    GroupEntity actual = GroupMapper.toGroupEntity(source);
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(expected.getVersion(), actual.getVersion());
+    assertEquals(expected.getCreatedBy(), actual.getCreatedBy());
+    assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+    assertEquals(expected.getModifiedAt(), actual.getModifiedAt());
+    assertEquals(expected.getSource(), actual.getSource());
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertEquals(new ArrayList<>(expected.getMembers()), new ArrayList<>(actual.getMembers()));
+    assertEquals(new ArrayList<>(expected.getOwners()), new ArrayList<>(actual.getOwners()));
+  }
+
+  private static void assertGroupEquals(Group expected, Group actual) {
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(expected.getVersion(), actual.getVersion());
+    assertEquals(expected.getCreatedBy(), actual.getCreatedBy());
+    assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+    assertEquals(expected.getModifiedAt(), actual.getModifiedAt());
+    assertEquals(expected.getSource(), actual.getSource());
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getDescription(), actual.getDescription());
+    assertEquals(expected.getMembers(), actual.getMembers());
+    assertEquals(expected.getOwners(), actual.getOwners());
+  }
+
+}
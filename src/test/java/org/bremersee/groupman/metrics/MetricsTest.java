@@ -127,6 +127,12 @@ public class MetricsTest {
   @Autowired
   GroupRepository groupRepository;
 
+  /**
+   * The gauge metrics.
+   */
+  @Autowired
+  GaugeMetrics gaugeMetrics;
+
   /**
    * Setup tests.
    */
@@ -176,6 +182,9 @@ public class MetricsTest {
       authorities = {ACTUATOR_ROLE_NAME, ACTUATOR_ADMIN_ROLE_NAME})
   @Test
   void callPrometheusEndpoint() {
+    StepVerifier
+        .create(gaugeMetrics.refresh())
+        .verifyComplete();
     webTestClient
         .get()
         .uri("/actuator/prometheus")
@@ -184,8 +193,14 @@ public class MetricsTest {
         .expectBody(String.class)
         .value(body -> {
           System.out.println("Prometheus data:\n" + body);
-          assertTrue(body.contains("groups_size{storage=\"ldap\",} 2.0"));
+          assertTrue(body.contains("groups_size{storage=\"ldap\",} 4.0"));
           assertTrue(body.contains("groups_size{storage=\"mongodb\",} 3.0"));
+          assertTrue(body.contains("groups_size_staleness_seconds{storage=\"ldap\",}"));
+          assertTrue(body.contains("groups_size_staleness_seconds{storage=\"mongodb\",}"));
+          assertTrue(body.contains(
+              "groups_repository_seconds_count{operation=\"count\",storage=\"mongodb\",}"));
+          assertTrue(body.contains(
+              "groups_repository_seconds_count{operation=\"count\",storage=\"ldap\",}"));
         });
   }
 
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.GroupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * The repository metrics test.
+ *
+ * @author Christian Bremer
+ */
+class RepositoryMetricsTest {
+
+  private MeterRegistry meterRegistry;
+
+  private GroupRepository target;
+
+  private GroupRepository repository;
+
+  /**
+   * Creates the measured repository.
+   */
+  @BeforeEach
+  void setUp() {
+    meterRegistry = new SimpleMeterRegistry();
+    target = mock(GroupRepository.class);
+    AspectJProxyFactory factory = new AspectJProxyFactory(target);
+    factory.addAspect(new RepositoryMetrics(meterRegistry));
+    repository = factory.getProxy();
+  }
+
+  /**
+   * Measure flux.
+   */
+  @Test
+  void measureFlux() {
+    when(target.findAll()).thenReturn(Flux.just(
+        GroupEntity.builder().name("a").build(),
+        GroupEntity.builder().name("b").build(),
+        GroupEntity.builder().name("c").build()));
+    StepVerifier.create(repository.findAll())
+        .expectNextCount(3)
+        .verifyComplete();
+    assertEquals(1L, meterRegistry.get("groups_repository")
+        .tag("storage", "mongodb")
+        .tag("operation", "findAll")
+        .timer()
+        .count());
+    assertEquals(3., meterRegistry.get("groups_repository_result_size")
+        .tag("storage", "mongodb")
+        .tag("operation", "findAll")
+        .summary()
+        .totalAmount());
+  }
+
+  /**
+   * Measure mono error.
+   */
+  @Test
+  void measureMonoError() {
+    when(target.count())
+        .thenReturn(Mono.error(new DataAccessResourceFailureException("Test")));
+    StepVerifier.create(repository.count())
+        .verifyError(DataAccessResourceFailureException.class);
+    assertEquals(1L, meterRegistry.get("groups_repository")
+        .tag("operation", "count")
+        .timer()
+        .count());
+    assertEquals(1., meterRegistry.get("groups_repository_errors")
+        .tag("operation", "count")
+        .tag("exception", "DataAccessResourceFailureException")
+        .counter()
+        .count());
+  }
+
+  /**
+   * Measure nothing before subscription.
+   */
+  @Test
+  void measureNothingBeforeSubscription() {
+    when(target.count()).thenReturn(Mono.just(1L));
+    Mono<Long> count = repository.count();
+    assertEquals(0L, meterRegistry.get("groups_repository")
+        .tag("operation", "count")
+        .timer()
+        .count());
+    StepVerifier.create(count)
+        .expectNext(1L)
+        .verifyComplete();
+    assertEquals(1L, meterRegistry.get("groups_repository")
+        .tag("operation", "count")
+        .timer()
+        .count());
+  }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bremersee.groupman.config.GroupChangeStreamProperties;
+import org.bremersee.groupman.repository.cache.GroupCache;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * The group change stream listener test.
+ *
+ * @author Christian Bremer
+ */
+class GroupChangeStreamListenerTest {
+
+  private GroupCache groupCache;
+
+  private ApplicationEventPublisher eventPublisher;
+
+  private GroupChangeStreamListener listener;
+
+  /**
+   * Sets up the listener.
+   */
+  @BeforeEach
+  void setUp() {
+    groupCache = mock(GroupCache.class);
+    when(groupCache.invalidate(anyCollection(), anyCollection())).thenReturn(Mono.empty());
+    when(groupCache.invalidateAll()).thenReturn(Mono.empty());
+    eventPublisher = mock(ApplicationEventPublisher.class);
+    listener = new GroupChangeStreamListener(
+        mock(ReactiveMongoTemplate.class),
+        groupCache,
+        eventPublisher,
+        new GroupChangeStreamProperties());
+  }
+
+  private static ChangeStreamEvent<Document> event(
+      OperationType operationType,
+      BsonDocument documentKey) {
+
+    final ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(
+        operationType,
+        new BsonDocument("_data", new BsonString("826")),
+        new BsonDocument("db", new BsonString("test")).append("coll", new BsonString("groups")),
+        null,
+        null,
+        documentKey,
+        null,
+        null,
+        null,
+        null);
+    return new ChangeStreamEvent<>(raw, Document.class, mock(MongoConverter.class));
+  }
+
+  /**
+   * On delete.
+   */
+  @Test
+  void onDelete() {
+    final String id = new ObjectId().toHexString();
+    when(groupCache.getCachedGroup(id)).thenReturn(Mono.just(GroupEntity.builder()
+        .id(id)
+        .name("GCSLT0")
+        .members(Stream.of("molly", "leopold").collect(Collectors.toSet()))
+        .build()));
+
+    StepVerifier
+        .create(listener.onChange(event(
+            OperationType.DELETE,
+            new BsonDocument("_id", new BsonObjectId(new ObjectId(id))))))
+        .verifyComplete();
+    verify(groupCache).invalidate(
+        eq(Collections.singleton(id)),
+        eq(Stream.of("molly", "leopold").collect(Collectors.toSet())));
+    verify(eventPublisher).publishEvent(new GroupChange(
+        id, true, Stream.of("molly", "leopold").collect(Collectors.toSet())));
+  }
+
+  /**
+   * On delete of a group, that is not cached.
+   */
+  @Test
+  void onDeleteWithoutCachedGroup() {
+    final String id = new ObjectId().toHexString();
+    when(groupCache.getCachedGroup(id)).thenReturn(Mono.empty());
+
+    StepVerifier
+        .create(listener.onChange(event(
+            OperationType.DELETE,
+            new BsonDocument("_id", new BsonObjectId(new ObjectId(id))))))
+        .verifyComplete();
+    verify(groupCache).invalidate(eq(Collections.singleton(id)), eq(Collections.emptySet()));
+    verify(eventPublisher).publishEvent(new GroupChange(id, true, Collections.emptySet()));
+  }
+
+  /**
+   * Every instance has its own resume token.
+   */
+  @Test
+  void getResumeTokenId() {
+    final GroupChangeStreamProperties properties = new GroupChangeStreamProperties();
+    properties.setInstanceId("instance1");
+    assertEquals("groups:instance1", new GroupChangeStreamListener(
+        mock(ReactiveMongoTemplate.class),
+        groupCache,
+        eventPublisher,
+        properties).getResumeTokenId());
+    assertTrue(listener.getResumeTokenId().startsWith("groups:"));
+    assertTrue(listener.getResumeTokenId().length() > "groups:".length());
+  }
+
+  /**
+   * On drop.
+   */
+  @Test
+  void onDrop() {
+    StepVerifier
+        .create(listener.onChange(event(OperationType.DROP, null)))
+        .verifyComplete();
+    verify(groupCache).invalidateAll();
+    verify(eventPublisher).publishEvent(GroupChange.ofAll());
+  }
+
+  /**
+   * The change stream is opened again after an invalidate event and starts after it.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  void startAfterInvalidate() {
+    final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    when(mongoTemplate.getCollectionName(GroupEntity.class)).thenReturn("groups");
+    final ReactiveIndexOperations indexOperations = mock(ReactiveIndexOperations.class);
+    when(indexOperations.ensureIndex(any())).thenReturn(Mono.just("modifiedAt"));
+    when(mongoTemplate.indexOps(anyString())).thenReturn(indexOperations);
+    when(mongoTemplate.findOne(any(Query.class), eq(Document.class), anyString()))
+        .thenReturn(Mono.empty());
+    when(mongoTemplate.upsert(any(Query.class), any(Update.class), anyString()))
+        .thenReturn(Mono.empty());
+    when(mongoTemplate.changeStream(
+        anyString(), any(ChangeStreamOptions.class), eq(Document.class)))
+        .thenReturn(Flux.just(event(OperationType.INVALIDATE, null)), Flux.never());
+    final GroupChangeStreamProperties properties = new GroupChangeStreamProperties();
+    properties.setRetryInterval(Duration.ofMillis(10L));
+    final GroupChangeStreamListener listener = new GroupChangeStreamListener(
+        mongoTemplate,
+        groupCache,
+        eventPublisher,
+        properties);
+
+    listener.start();
+    try {
+      final ArgumentCaptor<ChangeStreamOptions> options = ArgumentCaptor
+          .forClass(ChangeStreamOptions.class);
+      verify(mongoTemplate, timeout(5000L).times(2))
+          .changeStream(anyString(), options.capture(), eq(Document.class));
+      assertFalse(options.getAllValues().get(0).getResumeToken().isPresent());
+      assertTrue(options.getAllValues().get(1).isStartAfter());
+      assertEquals(
+          new BsonDocument("_data", new BsonString("826")),
+          options.getAllValues().get(1).getResumeToken().orElse(null));
+    } finally {
+      listener.stop();
+    }
+  }
+
+}
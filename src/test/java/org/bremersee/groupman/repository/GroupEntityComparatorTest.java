@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bremersee.groupman.model.Source;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * The group entity comparator test.
+ *
+ * @author Christian Bremer
+ */
+class GroupEntityComparatorTest {
+
+  private static GroupEntity group(String name, String createdBy) {
+    return group(name, createdBy, null, null);
+  }
+
+  private static GroupEntity group(String name, String createdBy, Source source, String id) {
+    return GroupEntity.builder().name(name).createdBy(createdBy).source(source).id(id).build();
+  }
+
+  /**
+   * Compare.
+   */
+  @Test
+  void compare() {
+    GroupEntityComparator comparator = GroupEntityComparator.INSTANCE;
+    assertEquals(0, comparator.compare(group("a", "x"), group("a", "x")));
+    assertTrue(comparator.compare(group("a", "y"), group("b", "x")) < 0);
+    assertTrue(comparator.compare(group("a", "y"), group("a", "x")) > 0);
+    assertTrue(comparator.compare(group("B", "x"), group("a", "x")) < 0);
+    assertTrue(comparator.compare(group(null, "x"), group("a", "x")) < 0);
+    assertTrue(comparator.compare(group("a", "x"), group("a", null)) > 0);
+    assertTrue(comparator.compare(group("a", null), group("a", "")) < 0);
+  }
+
+  /**
+   * Compare groups with the same name and creator.
+   */
+  @Test
+  void compareTies() {
+    GroupEntityComparator comparator = GroupEntityComparator.INSTANCE;
+    GroupEntity mongoGroup = group("a", "x", Source.INTERNAL, "5f0c6f3b9d1e2a0001a1b2c3");
+    GroupEntity ldapGroup = group("a", "x", Source.LDAP, "a");
+    assertTrue(comparator.compare(mongoGroup, ldapGroup) < 0);
+    assertTrue(comparator.compare(ldapGroup, mongoGroup) > 0);
+    assertTrue(comparator.compare(
+        mongoGroup, group("a", "x", Source.INTERNAL, "5f0c6f3b9d1e2a0001a1b2c4")) < 0);
+  }
+
+  /**
+   * Tail after.
+   */
+  @Test
+  void tailAfter() {
+    List<GroupEntity> groups = Arrays.asList(
+        group("a", "x"),
+        group("b", "x"),
+        group("c", "x"));
+    assertEquals(groups, GroupEntityComparator.tailAfter(groups, null));
+    assertEquals(
+        groups.subList(2, 3),
+        GroupEntityComparator.tailAfter(groups, group("b", "x")));
+    assertEquals(
+        groups.subList(1, 3),
+        GroupEntityComparator.tailAfter(groups, group("a", "y")));
+    assertEquals(
+        Collections.emptyList(),
+        GroupEntityComparator.tailAfter(groups, group("d", null)));
+  }
+
+  /**
+   * Merge ordered.
+   */
+  @Test
+  void mergeOrdered() {
+    List<GroupEntity> expected = Arrays.asList(
+        group("Admins", "Administrator"),
+        group("developers", "Administrator"),
+        group("developers", "molly"),
+        group("managers", "Administrator"),
+        group("users", "leopold"));
+    Flux<GroupEntity> mongo = Flux.just(expected.get(2), expected.get(4));
+    Flux<GroupEntity> ldap = Flux.just(expected.get(0), expected.get(1), expected.get(3));
+    StepVerifier
+        .create(Flux.mergeOrdered(GroupEntityComparator.INSTANCE, mongo, ldap)
+            .map(GroupEntity::getName)
+            .collectList())
+        .assertNext(actual -> assertEquals(
+            expected.stream().map(GroupEntity::getName).collect(Collectors.toList()),
+            actual))
+        .verifyComplete();
+  }
+
+}
@@ -18,12 +18,16 @@ package org.bremersee.groupman.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupBulkWriteResult.Outcome;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
@@ -123,4 +127,186 @@ class GroupRepositoryTest {
         .verify();
   }
 
-}
\ No newline at end of file
+  /**
+   * Count owned groups and membership.
+   */
+  @Test
+  void countOwnedGroupsAndMembership() {
+    StepVerifier
+        .create(groupRepository.countOwnedGroupsAndMembership("gustav"))
+        .assertNext(count -> {
+          assertEquals(2L, count.getOwnedGroups());
+          assertEquals(2L, count.getMembership());
+        })
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.countOwnedGroupsAndMembership("nobody"))
+        .assertNext(count -> {
+          assertEquals(0L, count.getOwnedGroups());
+          assertEquals(0L, count.getMembership());
+        })
+        .verifyComplete();
+  }
+
+  /**
+   * Find ids by members is containing.
+   */
+  @Test
+  void findIdsByMembersIsContaining() {
+    StepVerifier
+        .create(groupRepository.findIdsByMembersIsContaining("gustav").collectList())
+        .assertNext(ids -> {
+          assertEquals(2, ids.size());
+          assertTrue(ids.contains(group0.getId()));
+          assertTrue(ids.contains(group2.getId()));
+        })
+        .verifyComplete();
+  }
+
+  /**
+   * Add and remove members and owners.
+   */
+  @Test
+  void addAndRemoveMembersAndOwners() {
+    GroupEntity group = groupRepository.save(GroupEntity.builder()
+        .source(Source.INTERNAL)
+        .name("Group3")
+        .createdBy("anna")
+        .owners(Collections.singleton("anna"))
+        .members(Collections.singleton("hans"))
+        .build())
+        .block();
+    assertNotNull(group);
+    String id = group.getId();
+    Long version = group.getVersion();
+
+    StepVerifier
+        .create(groupRepository.addMembers(id, Arrays.asList("hans", "peter"), "anna"))
+        .assertNext(groupEntity -> {
+          assertEquals(Stream.of("hans", "peter").collect(Collectors.toSet()),
+              groupEntity.getMembers());
+          assertEquals(version + 1, groupEntity.getVersion());
+        })
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.addMembers(id, Collections.singleton("paul"), "hans"))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.removeMembers(id, Collections.singleton("hans"), null))
+        .assertNext(groupEntity -> assertEquals(
+            Collections.singleton("peter"),
+            groupEntity.getMembers()))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.addOwners(id, Collections.singleton("peter"), "anna"))
+        .assertNext(groupEntity -> assertEquals(
+            Stream.of("anna", "peter").collect(Collectors.toSet()),
+            groupEntity.getOwners()))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.removeOwners(id, Arrays.asList("anna", "peter"), "anna"))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.removeOwners(id, Collections.singleton("anna"), "peter"))
+        .assertNext(groupEntity -> assertEquals(
+            Collections.singleton("peter"),
+            groupEntity.getOwners()))
+        .verifyComplete();
+  }
+
+  /**
+   * Bulk write with a concurrent modification.
+   */
+  @Test
+  void bulkWriteWithConcurrentModification() {
+    GroupEntity group = saveBulkGroup("Group4");
+    Long expectedVersion = group.getVersion();
+    StepVerifier
+        .create(groupRepository.addMembers(group.getId(), Collections.singleton("paul"), "anna"))
+        .assertNext(groupEntity -> assertEquals(expectedVersion + 1, groupEntity.getVersion()))
+        .verifyComplete();
+
+    GroupEntity replacement = group.copy();
+    replacement.setDescription("Bulk update");
+    replacement.setVersion(expectedVersion + 1);
+    StepVerifier
+        .create(groupRepository.bulkWrite(
+            Collections.singletonList(GroupBulkWrite.replace(replacement, expectedVersion)),
+            true))
+        .assertNext(results -> assertEquals(
+            Collections.singletonList(Outcome.CONFLICT),
+            results.stream().map(GroupBulkWriteResult::getOutcome).collect(Collectors.toList())))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.findById(group.getId()))
+        .assertNext(groupEntity -> {
+          assertEquals(Collections.singleton("paul"), groupEntity.getMembers());
+          assertNull(groupEntity.getDescription());
+        })
+        .verifyComplete();
+  }
+
+  /**
+   * Bulk write with a concurrent deletion.
+   */
+  @Test
+  void bulkWriteWithConcurrentDeletion() {
+    GroupEntity group = saveBulkGroup("Group5");
+    StepVerifier
+        .create(groupRepository.deleteById(group.getId()))
+        .verifyComplete();
+
+    GroupEntity replacement = group.copy();
+    replacement.setVersion(group.getVersion() + 1);
+    StepVerifier
+        .create(groupRepository.bulkWrite(
+            Collections.singletonList(GroupBulkWrite.replace(replacement, group.getVersion())),
+            true))
+        .assertNext(results -> assertEquals(
+            Collections.singletonList(Outcome.NOT_FOUND),
+            results.stream().map(GroupBulkWriteResult::getOutcome).collect(Collectors.toList())))
+        .verifyComplete();
+  }
+
+  /**
+   * Bulk write with two replacements of the same group.
+   */
+  @Test
+  void bulkWriteWithSameGroupTwice() {
+    GroupEntity group = saveBulkGroup("Group6");
+    GroupEntity replacement0 = group.copy();
+    replacement0.setDescription("First");
+    replacement0.setVersion(group.getVersion() + 1);
+    GroupEntity replacement1 = group.copy();
+    replacement1.setDescription("Second");
+    replacement1.setVersion(group.getVersion() + 1);
+
+    StepVerifier
+        .create(groupRepository.bulkWrite(
+            Arrays.asList(
+                GroupBulkWrite.replace(replacement0, group.getVersion()),
+                GroupBulkWrite.replace(replacement1, group.getVersion())),
+            true))
+        .assertNext(results -> assertEquals(
+            Arrays.asList(Outcome.SUCCESS, Outcome.CONFLICT),
+            results.stream().map(GroupBulkWriteResult::getOutcome).collect(Collectors.toList())))
+        .verifyComplete();
+    StepVerifier
+        .create(groupRepository.findById(group.getId()))
+        .assertNext(groupEntity -> assertEquals("First", groupEntity.getDescription()))
+        .verifyComplete();
+  }
+
+  private GroupEntity saveBulkGroup(String name) {
+    GroupEntity group = groupRepository.save(GroupEntity.builder()
+        .source(Source.INTERNAL)
+        .name(name)
+        .createdBy("anna")
+        .owners(Collections.singleton("anna"))
+        .build())
+        .block();
+    assertNotNull(group);
+    return group;
+  }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * The redis group cache test.
+ *
+ * @author Christian Bremer
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=http://localhost/jwk",
+    "bremersee.groupman.redis-cache.enabled=true",
+    "bremersee.groupman.redis-cache.local-time-to-live=10s"
+})
+class RedisGroupCacheTest {
+
+  /**
+   * The group cache.
+   */
+  @Autowired
+  GroupCache groupCache;
+
+  /**
+   * Cache is redis group cache.
+   */
+  @Test
+  void cacheIsRedisGroupCache() {
+    assertTrue(groupCache instanceof RedisGroupCache);
+  }
+
+  /**
+   * Get group from source and then from cache.
+   */
+  @Test
+  void getGroupFromSourceAndThenFromCache() {
+    final String id = UUID.randomUUID().toString();
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<GroupEntity> source = Mono.fromCallable(() -> {
+      calls.incrementAndGet();
+      return GroupEntity.builder()
+          .id(id)
+          .version(1L)
+          .source(Source.INTERNAL)
+          .name("RGCT0")
+          .createdBy("molly")
+          .owners(Collections.singleton("molly"))
+          .members(Stream.of("molly", "leopold").collect(Collectors.toSet()))
+          .build();
+    });
+
+    StepVerifier.create(groupCache.getGroup(id, source))
+        .assertNext(groupEntity -> assertEquals("RGCT0", groupEntity.getName()))
+        .verifyComplete();
+    StepVerifier.create(groupCache.getGroup(id, source))
+        .assertNext(groupEntity -> {
+          assertEquals("RGCT0", groupEntity.getName());
+          assertEquals(1L, groupEntity.getVersion());
+          assertEquals(
+              Stream.of("molly", "leopold").collect(Collectors.toSet()),
+              groupEntity.getMembers());
+        })
+        .verifyComplete();
+    assertEquals(1, calls.get());
+
+    StepVerifier.create(groupCache.invalidate(Collections.singleton(id), null))
+        .verifyComplete();
+    StepVerifier.create(groupCache.getGroup(id, source))
+        .expectNextCount(1)
+        .verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  /**
+   * Get membership ids from source and then from cache.
+   */
+  @Test
+  void getMembershipIdsFromSourceAndThenFromCache() {
+    final String user = UUID.randomUUID().toString();
+    final Set<String> ids = Stream.of("a", "b").collect(Collectors.toSet());
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<Tuple2<Set<String>, Boolean>> source = Mono.fromCallable(() -> {
+      calls.incrementAndGet();
+      return Tuples.of(ids, true);
+    });
+
+    StepVerifier.create(groupCache.getMembershipIds(user, true, source))
+        .expectNext(ids)
+        .verifyComplete();
+    StepVerifier.create(groupCache.getMembershipIds(user, true, source))
+        .expectNext(ids)
+        .verifyComplete();
+    assertEquals(1, calls.get());
+
+    // the membership without ldap groups is another entry
+    StepVerifier.create(groupCache.getMembershipIds(user, false, source))
+        .expectNext(ids)
+        .verifyComplete();
+    assertEquals(2, calls.get());
+
+    StepVerifier.create(groupCache.invalidate(null, Collections.singleton(user)))
+        .verifyComplete();
+    StepVerifier.create(groupCache.getMembershipIds(user, true, source))
+        .expectNext(ids)
+        .verifyComplete();
+    StepVerifier.create(groupCache.getMembershipIds(user, false, source))
+        .expectNext(ids)
+        .verifyComplete();
+    assertEquals(4, calls.get());
+  }
+
+  /**
+   * Incomplete membership ids are not cached.
+   */
+  @Test
+  void getIncompleteMembershipIds() {
+    final String user = UUID.randomUUID().toString();
+    final Set<String> ids = Collections.singleton("a");
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<Tuple2<Set<String>, Boolean>> source = Mono.fromCallable(() -> {
+      calls.incrementAndGet();
+      return Tuples.of(ids, false);
+    });
+
+    StepVerifier.create(groupCache.getMembershipIds(user, true, source))
+        .expectNext(ids)
+        .verifyComplete();
+    StepVerifier.create(groupCache.getMembershipIds(user, true, source))
+        .expectNext(ids)
+        .verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  /**
+   * Membership ids, that were loaded before an invalidation, are not cached.
+   */
+  @Test
+  void getMembershipIdsWithConcurrentInvalidation() {
+    final String user = UUID.randomUUID().toString();
+    final Set<String> staleIds = Collections.singleton("stale");
+    final Set<String> ids = Collections.singleton("a");
+    final Mono<Tuple2<Set<String>, Boolean>> staleSource = groupCache
+        .invalidate(null, Collections.singleton(user))
+        .then(Mono.fromCallable(() -> Tuples.of(staleIds, true)));
+
+    StepVerifier.create(groupCache.getMembershipIds(user, true, staleSource))
+        .expectNext(staleIds)
+        .verifyComplete();
+    StepVerifier.create(groupCache.getMembershipIds(user, true, Mono.just(Tuples.of(ids, true))))
+        .expectNext(ids)
+        .verifyComplete();
+  }
+
+  /**
+   * The membership ids of a former member are invalidated by the group, without knowing the
+   * member.
+   */
+  @Test
+  void getMembershipIdsAfterInvalidatingGroup() {
+    final String user = UUID.randomUUID().toString();
+    final String groupId = UUID.randomUUID().toString();
+    final Set<String> ids = Collections.singleton(groupId);
+    final AtomicInteger calls = new AtomicInteger();
+    final Mono<Tuple2<Set<String>, Boolean>> source = Mono.fromCallable(() -> {
+      calls.incrementAndGet();
+      return Tuples.of(ids, true);
+    });
+
+    StepVerifier.create(groupCache.getMembershipIds(user, false, source))
+        .expectNext(ids)
+        .verifyComplete();
+    StepVerifier.create(groupCache.invalidate(Collections.singleton(groupId), null))
+        .verifyComplete();
+    StepVerifier.create(groupCache.getMembershipIds(user, false, source))
+        .expectNext(ids)
+        .verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  /**
+   * A group, that was loaded before all entries were invalidated, is not cached.
+   */
+  @Test
+  void getGroupWithConcurrentInvalidateAll() {
+    final String id = UUID.randomUUID().toString();
+    final Mono<GroupEntity> source = groupCache.invalidateAll()
+        .then(Mono.fromCallable(() -> GroupEntity.builder()
+            .id(id)
+            .source(Source.INTERNAL)
+            .name("RGCT2")
+            .createdBy("molly")
+            .build()));
+
+    StepVerifier.create(groupCache.getGroup(id, source))
+        .expectNextCount(1)
+        .verifyComplete();
+    StepVerifier.create(groupCache.getCachedGroup(id))
+        .verifyComplete();
+  }
+
+  /**
+   * Get cached group and invalidate all.
+   */
+  @Test
+  void getCachedGroupAndInvalidateAll() {
+    final String id = UUID.randomUUID().toString();
+    StepVerifier.create(groupCache.getCachedGroup(id))
+        .verifyComplete();
+    StepVerifier.create(groupCache.getGroup(id, Mono.just(GroupEntity.builder()
+        .id(id)
+        .source(Source.INTERNAL)
+        .name("RGCT1")
+        .createdBy("molly")
+        .build())))
+        .expectNextCount(1)
+        .verifyComplete();
+    StepVerifier.create(groupCache.getCachedGroup(id))
+        .assertNext(groupEntity -> assertEquals("RGCT1", groupEntity.getName()))
+        .verifyComplete();
+
+    StepVerifier.create(groupCache.invalidateAll())
+        .verifyComplete();
+    StepVerifier.create(groupCache.getCachedGroup(id))
+        .verifyComplete();
+  }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bremersee.groupman.config.LdapCacheProperties;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * The caching group ldap repository test.
+ *
+ * @author Christian Bremer
+ */
+class CachingGroupLdapRepositoryTest {
+
+  private static final GroupEntity developers = GroupEntity.builder()
+      .id("developers")
+      .name("developers")
+      .createdBy("Administrator")
+      .source(Source.LDAP)
+      .owners(Collections.singleton("Administrator"))
+      .members(Stream.of("anna", "hans").collect(Collectors.toSet()))
+      .build();
+
+  private static final GroupEntity managers = GroupEntity.builder()
+      .id("managers")
+      .name("managers")
+      .createdBy("Administrator")
+      .source(Source.LDAP)
+      .owners(Collections.singleton("Administrator"))
+      .members(Collections.singleton("leopold"))
+      .build();
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private CachingGroupLdapRepository repository;
+
+  /**
+   * Sets up the repository.
+   */
+  @BeforeEach
+  void setUp() {
+    calls.set(0);
+    // the delegate is case insensitive like the ldap filters
+    GroupLdapRepository delegate = new GroupLdapRepository() {
+      @Override
+      public Flux<GroupEntity> findAll() {
+        calls.incrementAndGet();
+        return Flux.just(developers, managers);
+      }
+
+      @Override
+      public Mono<GroupEntity> findByName(String name) {
+        calls.incrementAndGet();
+        return Flux.just(developers, managers)
+            .filter(group -> group.getName().equalsIgnoreCase(name))
+            .next();
+      }
+
+      @Override
+      public Flux<GroupEntity> findByNameIn(List<String> names) {
+        calls.incrementAndGet();
+        return Flux.just(developers, managers)
+            .filter(group -> names.stream().anyMatch(group.getName()::equalsIgnoreCase));
+      }
+
+      @Override
+      public Flux<GroupEntity> findByMembersIsContaining(String name) {
+        calls.incrementAndGet();
+        return Flux.just(developers, managers)
+            .filter(group -> group.getMembers().contains(name));
+      }
+    };
+    repository = new CachingGroupLdapRepository(
+        delegate,
+        new LdapCacheProperties(),
+        meterRegistry);
+  }
+
+  /**
+   * Find by name.
+   */
+  @Test
+  void findByName() {
+    StepVerifier.create(repository.findByName("managers"))
+        .assertNext(group -> {
+          assertEquals("managers", group.getName());
+          assertNotSame(managers, group);
+        })
+        .verifyComplete();
+    StepVerifier.create(repository.findByName("managers"))
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    StepVerifier.create(repository.findByName("unknown"))
+        .verifyComplete();
+    assertEquals(2, calls.get()); // absent groups are not cached
+  }
+
+  /**
+   * Find by name in.
+   */
+  @Test
+  void findByNameIn() {
+    StepVerifier.create(repository.findByNameIn(Arrays.asList("managers", "developers")))
+        .assertNext(group -> assertEquals("developers", group.getName()))
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    int callsAfterFirstLookup = calls.get();
+    StepVerifier.create(repository.findByNameIn(Collections.singletonList("developers")))
+        .assertNext(group -> assertEquals("developers", group.getName()))
+        .verifyComplete();
+    assertEquals(callsAfterFirstLookup, calls.get());
+  }
+
+  /**
+   * Find by name in with names, that differ in case from the names in the directory.
+   */
+  @Test
+  void findByNameInIgnoresCase() {
+    StepVerifier.create(repository.findByNameIn(Arrays.asList("Managers", "DEVELOPERS")))
+        .assertNext(group -> {
+          assertEquals("developers", group.getName());
+          assertNotSame(developers, group);
+        })
+        .assertNext(group -> {
+          assertEquals("managers", group.getName());
+          assertNotSame(managers, group);
+        })
+        .verifyComplete();
+    StepVerifier.create(repository.findByName("MANAGERS"))
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+  }
+
+  /**
+   * Find by members is containing and count membership.
+   */
+  @Test
+  void findByMembersIsContaining() {
+    StepVerifier.create(repository.findByMembersIsContaining("anna"))
+        .assertNext(group -> {
+          assertEquals("developers", group.getName());
+          assertNotSame(developers, group);
+        })
+        .verifyComplete();
+    StepVerifier.create(repository.countMembership("anna"))
+        .assertNext(size -> assertEquals(1L, size))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+    assertNotNull(meterRegistry.find("cache.gets")
+        .tag("cache", "ldapGroupsByMember")
+        .tag("result", "hit")
+        .functionCounter());
+  }
+
+  /**
+   * Find all and count.
+   */
+  @Test
+  void findAll() {
+    StepVerifier.create(repository.findAll().count())
+        .assertNext(size -> assertEquals(2L, size))
+        .verifyComplete();
+    StepVerifier.create(repository.count())
+        .assertNext(size -> assertEquals(2L, size))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bremersee.groupman.repository.GroupChange;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The group ldap index test.
+ *
+ * @author Christian Bremer
+ */
+class GroupLdapIndexTest {
+
+  private static GroupEntity group(String name, long modifiedAt, String... members) {
+    return GroupEntity.builder()
+        .id(name)
+        .name(name)
+        .createdBy("Administrator")
+        .modifiedAt(new Date(modifiedAt))
+        .members(Stream.of(members).collect(Collectors.toSet()))
+        .build();
+  }
+
+  /**
+   * Update with modified, new and deleted groups.
+   */
+  @Test
+  void update() {
+    GroupLdapIndex index = GroupLdapIndex.of(Arrays.asList(
+        group("developers", 1000L, "anna", "hans"),
+        group("managers", 2000L, "leopold")));
+    assertEquals(new Date(2000L), index.getHighWaterMark());
+
+    GroupLdapIndex updated = index
+        .update(Arrays.asList(
+            group("managers", 3000L, "leopold", "molly"),
+            group("testers", 3000L, "hans")))
+        .retainAll(Arrays.asList("managers", "testers"));
+
+    assertEquals(2, updated.size());
+    assertNull(updated.findByName("developers"));
+    assertEquals(new Date(3000L), updated.getHighWaterMark());
+    assertEquals("managers", updated.findByMember("molly").get(0).getName());
+    assertEquals("testers", updated.findByMember("hans").get(0).getName());
+    assertTrue(updated.findByMember("anna").isEmpty());
+
+    // the groups of the high-water mark are returned again, but nothing has changed
+    assertSame(updated, updated.update(
+        Collections.singletonList(group("testers", 3000L, "hans"))));
+    assertSame(updated, updated.retainAll(Arrays.asList("managers", "testers")));
+  }
+
+  /**
+   * Members, whose names differ only in case, are the same member.
+   */
+  @Test
+  void membersIgnoreCase() {
+    GroupLdapIndex index = GroupLdapIndex.of(Arrays.asList(
+        group("developers", 1000L, "anna", "Anna", "hans"),
+        group("managers", 2000L, "ANNA")));
+    assertEquals(2, index.memberSize());
+    assertEquals(
+        Arrays.asList("developers", "managers"),
+        index.findByMember("anna").stream()
+            .map(GroupEntity::getName)
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Changes between two indexes.
+   */
+  @Test
+  void changes() {
+    GroupLdapIndex index = GroupLdapIndex.of(Arrays.asList(
+        group("developers", 1000L, "anna", "hans"),
+        group("managers", 2000L, "leopold"),
+        group("testers", 2000L, "paul")));
+    GroupLdapIndex updated = GroupLdapIndex.of(Arrays.asList(
+        group("developers", 3000L, "anna", "peter"),
+        group("managers", 2000L, "leopold"),
+        group("admins", 3000L, "molly")));
+
+    Map<String, GroupChange> changes = index.changes(updated).stream()
+        .collect(Collectors.toMap(GroupChange::getGroupId, Function.identity()));
+    assertEquals(Stream.of("developers", "testers", "admins").collect(Collectors.toSet()),
+        changes.keySet());
+    assertEquals(Stream.of("anna", "hans", "peter").collect(Collectors.toSet()),
+        changes.get("developers").getUsers());
+    assertTrue(changes.get("testers").isDeleted());
+    assertEquals(Collections.singleton("paul"), changes.get("testers").getUsers());
+    assertEquals(Collections.singleton("molly"), changes.get("admins").getUsers());
+    assertTrue(updated.changes(updated).isEmpty());
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bremersee.data.ldaptive.LdaptiveEntryMapper;
+import org.bremersee.data.ldaptive.LdaptiveTemplate;
+import org.bremersee.groupman.config.DomainControllerProperties;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ldaptive.ConnectionFactory;
+import org.ldaptive.SearchRequest;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * The group ldap repository implementation test.
+ *
+ * @author Christian Bremer
+ */
+class GroupLdapRepositoryImplTest {
+
+  private final List<SearchRequest> searchRequests = Collections
+      .synchronizedList(new ArrayList<>());
+
+  private GroupLdapRepositoryImpl repository;
+
+  /**
+   * Sets up the repository.
+   */
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    searchRequests.clear();
+    DomainControllerProperties properties = new DomainControllerProperties();
+    properties.setGroupBaseDn("ou=groups,dc=bremersee,dc=org");
+    properties.setGroupFindByNamesChunkSize(2);
+    properties.setGroupFindByNamesConcurrency(2);
+
+    LdaptiveTemplate ldaptiveTemplate = mock(LdaptiveTemplate.class);
+    when(ldaptiveTemplate.findAll(any(SearchRequest.class), any(LdaptiveEntryMapper.class)))
+        .then(invocation -> {
+          SearchRequest searchRequest = invocation.getArgument(0);
+          searchRequests.add(searchRequest);
+          return searchRequest.getSearchFilter().getParameters().values().stream()
+              .map(name -> GroupEntity.builder()
+                  .id(String.valueOf(name))
+                  .name(String.valueOf(name))
+                  .createdBy("Administrator")
+                  .source(Source.LDAP)
+                  .build());
+        });
+    ObjectProvider<LdaptiveTemplate> ldaptiveTemplateProvider = mock(ObjectProvider.class);
+    when(ldaptiveTemplateProvider.getIfAvailable()).thenReturn(ldaptiveTemplate);
+    ObjectProvider<ConnectionFactory> connectionFactoryProvider = mock(ObjectProvider.class);
+
+    repository = new GroupLdapRepositoryImpl(
+        properties,
+        ldaptiveTemplateProvider,
+        connectionFactoryProvider,
+        Schedulers.immediate());
+  }
+
+  /**
+   * Find by name in with one chunk.
+   */
+  @Test
+  void findByNameInWithOneChunk() {
+    StepVerifier.create(repository.findByNameIn(Arrays.asList("b", "a", "b"))
+        .map(GroupEntity::getName))
+        .expectNext("a", "b")
+        .verifyComplete();
+    assertEquals(1, searchRequests.size());
+  }
+
+  /**
+   * Find by name in with many chunks.
+   */
+  @Test
+  void findByNameInWithManyChunks() {
+    StepVerifier.create(repository.findByNameIn(Arrays.asList("e", "d", "c", "b", "a"))
+        .map(GroupEntity::getName))
+        .expectNext("a", "b", "c", "d", "e")
+        .verifyComplete();
+    assertEquals(3, searchRequests.size());
+    assertEquals(
+        Arrays.asList(1, 2, 2),
+        searchRequests.stream()
+            .map(searchRequest -> searchRequest.getSearchFilter().getParameters().size())
+            .sorted()
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Seek prefix.
+   */
+  @Test
+  void seekPrefix() {
+    assertEquals("developers", GroupLdapRepositoryImpl.seekPrefix("developers"));
+    assertEquals("dev-", GroupLdapRepositoryImpl.seekPrefix("dev-Ops"));
+    assertEquals("group", GroupLdapRepositoryImpl.seekPrefix("group one"));
+    assertEquals("", GroupLdapRepositoryImpl.seekPrefix("Zeta"));
+    assertEquals("", GroupLdapRepositoryImpl.seekPrefix(null));
+  }
+
+  /**
+   * Find all after seeks the position in the directory.
+   */
+  @Test
+  void findAllAfter() {
+    StepVerifier.create(repository.findAllAfter(GroupEntity.builder()
+        .id("developers")
+        .name("developers")
+        .createdBy("Administrator")
+        .source(Source.LDAP)
+        .build()))
+        .verifyComplete();
+    assertEquals(1, searchRequests.size());
+    assertEquals(
+        "(&(objectClass=group)(cn>={0}))",
+        searchRequests.get(0).getSearchFilter().getFilter());
+    assertEquals(
+        Collections.singletonList("developers"),
+        new ArrayList<>(searchRequests.get(0).getSearchFilter().getParameters().values()));
+  }
+
+  /**
+   * Find all after a name, that cannot be used as lower bound, reads all groups.
+   */
+  @Test
+  void findAllAfterWithoutSeek() {
+    StepVerifier.create(repository.findAllAfter(GroupEntity.builder()
+        .id("Zeta")
+        .name("Zeta")
+        .createdBy("Administrator")
+        .source(Source.LDAP)
+        .build()))
+        .verifyComplete();
+    assertEquals(1, searchRequests.size());
+    assertEquals("(objectClass=group)", searchRequests.get(0).getSearchFilter().getFilter());
+  }
+
+}
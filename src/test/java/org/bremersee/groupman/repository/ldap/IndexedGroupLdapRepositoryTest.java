@@ -0,0 +1,210 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.groupman.repository.ldap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bremersee.groupman.config.LdapIndexProperties;
+import org.bremersee.groupman.model.Source;
+import org.bremersee.groupman.repository.GroupChange;
+import org.bremersee.groupman.repository.GroupEntity;
+import org.bremersee.groupman.repository.cache.DisabledGroupCache;
+import org.bremersee.groupman.repository.cache.GroupCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * The indexed group ldap repository test.
+ *
+ * @author Christian Bremer
+ */
+class IndexedGroupLdapRepositoryTest {
+
+  private static final GroupEntity developers = GroupEntity.builder()
+      .id("developers")
+      .name("developers")
+      .createdBy("Administrator")
+      .source(Source.LDAP)
+      .owners(Collections.singleton("Administrator"))
+      .members(Stream.of("anna", "hans").collect(Collectors.toSet()))
+      .build();
+
+  private static final GroupEntity managers = GroupEntity.builder()
+      .id("managers")
+      .name("managers")
+      .createdBy("Administrator")
+      .source(Source.LDAP)
+      .owners(Collections.singleton("Administrator"))
+      .members(Stream.of("anna", "leopold").collect(Collectors.toSet()))
+      .build();
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private final AtomicInteger nameCalls = new AtomicInteger();
+
+  private List<String> names;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private final Set<String> invalidatedUsers = new HashSet<>();
+
+  private final List<Object> events = new ArrayList<>();
+
+  private IndexedGroupLdapRepository repository;
+
+  /**
+   * Sets up the repository.
+   */
+  @BeforeEach
+  void setUp() {
+    calls.set(0);
+    nameCalls.set(0);
+    invalidatedUsers.clear();
+    events.clear();
+    names = Arrays.asList("managers", "developers");
+    GroupLdapRepository delegate = new GroupLdapRepository() {
+      @Override
+      public Flux<GroupEntity> findAll() {
+        calls.incrementAndGet();
+        return Flux.just(managers, developers);
+      }
+
+      @Override
+      public Flux<String> findAllNames() {
+        nameCalls.incrementAndGet();
+        return Flux.fromIterable(names);
+      }
+
+      @Override
+      public Flux<GroupEntity> findByMembersIsContaining(String name) {
+        calls.incrementAndGet();
+        return findAll().filter(group -> group.getMembers().contains(name));
+      }
+    };
+    GroupCache groupCache = new DisabledGroupCache() {
+      @Override
+      public Mono<Void> invalidate(Collection<String> groupIds, Collection<String> users) {
+        invalidatedUsers.addAll(users);
+        return Mono.empty();
+      }
+    };
+    repository = new IndexedGroupLdapRepository(
+        delegate,
+        new LdapIndexProperties(),
+        groupCache,
+        events::add,
+        meterRegistry);
+  }
+
+  /**
+   * Without index the delegate is called.
+   */
+  @Test
+  void withoutIndex() {
+    StepVerifier.create(repository.findByMembersIsContaining("leopold"))
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  /**
+   * With index the delegate is not called.
+   */
+  @Test
+  void withIndex() {
+    StepVerifier.create(repository.synchronize())
+        .assertNext(index -> assertEquals(2, index.size()))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+
+    StepVerifier.create(repository.findByMembersIsContaining("Anna"))
+        .assertNext(group -> {
+          assertEquals("developers", group.getName());
+          assertNotSame(developers, group);
+        })
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    StepVerifier.create(repository.countMembership("leopold"))
+        .assertNext(size -> assertEquals(1L, size))
+        .verifyComplete();
+    StepVerifier.create(repository.findByName("Managers"))
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    StepVerifier.create(repository.findByNameIn(Arrays.asList("managers", "unknown")))
+        .assertNext(group -> assertEquals("managers", group.getName()))
+        .verifyComplete();
+    StepVerifier.create(repository.findAll())
+        .assertNext(group -> assertNotSame(developers, group))
+        .assertNext(group -> assertNotSame(managers, group))
+        .verifyComplete();
+    StepVerifier.create(repository.count())
+        .assertNext(size -> assertEquals(2L, size))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+
+    assertEquals(2., meterRegistry.get("ldap_index_groups_size").gauge().value());
+    assertEquals(3., meterRegistry.get("ldap_index_members_size").gauge().value());
+    assertNotNull(meterRegistry.get("ldap_index_sync").timer());
+  }
+
+  /**
+   * The deleted groups are removed by the deletion synchronization.
+   */
+  @Test
+  void synchronizeDeletions() {
+    StepVerifier.create(repository.synchronizeDeletions())
+        .verifyComplete();
+    assertEquals(0, nameCalls.get()); // without index nothing is done
+
+    StepVerifier.create(repository.synchronize())
+        .assertNext(index -> assertEquals(2, index.size()))
+        .verifyComplete();
+    names = Collections.singletonList("managers");
+    StepVerifier.create(repository.synchronizeDeletions())
+        .assertNext(index -> {
+          assertEquals(1, index.size());
+          assertNull(index.findByName("developers"));
+        })
+        .verifyComplete();
+    assertEquals(1, nameCalls.get());
+    assertEquals(1, calls.get());
+
+    // the membership of the members of the deleted group is invalidated
+    assertEquals(Stream.of("anna", "hans").collect(Collectors.toSet()), invalidatedUsers);
+    assertEquals(
+        Collections.singletonList(new GroupChange("developers", true, invalidatedUsers)),
+        events);
+  }
+
+}